@@ -0,0 +1,55 @@
+package zendo.games.zenlib.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.openjdk.jmh.annotations.*;
+import zendo.games.zenlib.aseprite.Aseprite;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsepriteBenchmark {
+
+    @Param({"16", "64"})
+    public int size;
+
+    @Param({"4", "16"})
+    public int frames;
+
+    private File dir;
+    private FileHandle file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Headless.init();
+        dir = Files.createTempDirectory("aseprite-corpus").toFile();
+        file = new FileHandle(AsepriteCorpus.generate(dir, "sprite-" + size + "-" + frames, size, size, frames, 1234));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        file.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public Aseprite parse() {
+        Aseprite aseprite = new Aseprite(file);
+        // the parser leaves its pixmaps for the caller to dispose
+        for (Aseprite.Frame frame : aseprite.frames) {
+            for (Aseprite.Cel cel : frame.cels) {
+                cel.image.dispose();
+            }
+            frame.image.dispose();
+        }
+        return aseprite;
+    }
+
+}
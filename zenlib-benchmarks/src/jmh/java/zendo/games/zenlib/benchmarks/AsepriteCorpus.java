@@ -0,0 +1,139 @@
+package zendo.games.zenlib.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Writes synthetic .ase files covering the chunks the Aseprite parser understands:
+ * layers (including a hitbox layer), raw rgba cels and frame tags
+ * @link https://github.com/aseprite/aseprite/blob/master/docs/ase-file-specs.md
+ */
+class AsepriteCorpus {
+
+    static File generate(File dir, String name, int width, int height, int frames, long seed) throws IOException {
+        Random random = new Random(seed);
+        ByteBuffer out = ByteBuffer.allocate(256 + frames * (512 + width * height * 4 * 2));
+        out.order(ByteOrder.LITTLE_ENDIAN);
+
+        // header
+        out.putInt(0);                 // file size, patched at the end
+        out.putShort((short) 0xA5E0);  // magic
+        out.putShort((short) frames);
+        out.putShort((short) width);
+        out.putShort((short) height);
+        out.putShort((short) 32);      // color depth, rgba
+        out.putInt(1);                 // flags
+        out.putShort((short) 100);     // speed (deprecated)
+        out.putInt(0);
+        out.putInt(0);
+        out.put((byte) 0);             // transparent palette entry
+        out.position(out.position() + 3);
+        out.putShort((short) 0);       // number of colors
+        out.put((byte) 1);             // pixel width
+        out.put((byte) 1);             // pixel height
+        out.position(128);
+
+        for (int frame = 0; frame < frames; frame++) {
+            int frameStart = out.position();
+            boolean first = (frame == 0);
+            int chunks = first ? 5 : 2;
+
+            out.putInt(0);             // frame size, patched below
+            out.putShort((short) 0xF1FA);
+            out.putShort((short) chunks);
+            out.putShort((short) 100); // duration in millis
+            out.position(out.position() + 2);
+            out.putInt(chunks);
+
+            if (first) {
+                layer(out, "main");
+                layer(out, "hitbox");
+                tags(out, frames);
+            }
+
+            // a full size sprite cel and a small hitbox cel
+            cel(out, 0, 0, 0, width, height, random);
+            cel(out, 1, width / 4, height / 4, width / 2, height / 2, random);
+
+            out.putInt(frameStart, out.position() - frameStart);
+        }
+        out.putInt(0, out.position());
+
+        File file = new File(dir, name + ".ase");
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(out.array(), 0, out.position());
+        }
+        return file;
+    }
+
+    private static void layer(ByteBuffer out, String name) {
+        int start = beginChunk(out, 0x2004);
+        out.putShort((short) 1);    // flags: visible
+        out.putShort((short) 0);    // type: normal
+        out.putShort((short) 0);    // child level
+        out.putShort((short) 0);    // width (ignored)
+        out.putShort((short) 0);    // height (ignored)
+        out.putShort((short) 0);    // blend mode
+        out.put((byte) 255);        // opacity
+        out.position(out.position() + 3);
+        string(out, name);
+        endChunk(out, start);
+    }
+
+    private static void cel(ByteBuffer out, int layer, int x, int y, int width, int height, Random random) {
+        int start = beginChunk(out, 0x2005);
+        out.putShort((short) layer);
+        out.putShort((short) x);
+        out.putShort((short) y);
+        out.put((byte) 255);        // opacity
+        out.putShort((short) 0);    // cel type: raw
+        out.position(out.position() + 7);
+        out.putShort((short) width);
+        out.putShort((short) height);
+        for (int i = 0; i < width * height; i++) {
+            out.putInt(random.nextInt() | 0xFF000000);
+        }
+        endChunk(out, start);
+    }
+
+    private static void tags(ByteBuffer out, int frames) {
+        int start = beginChunk(out, 0x2018);
+        out.putShort((short) 2);
+        out.position(out.position() + 8);
+        tag(out, "idle", 0, frames / 2 - 1);
+        tag(out, "run", frames / 2, frames - 1);
+        endChunk(out, start);
+    }
+
+    private static void tag(ByteBuffer out, String name, int from, int to) {
+        out.putShort((short) from);
+        out.putShort((short) to);
+        out.put((byte) 0);          // loop direction: forward
+        out.position(out.position() + 8);
+        out.put((byte) 255).put((byte) 0).put((byte) 0).put((byte) 0);
+        string(out, name);
+    }
+
+    private static void string(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static int beginChunk(ByteBuffer out, int type) {
+        int start = out.position();
+        out.putInt(0);              // chunk size, patched in endChunk
+        out.putShort((short) type);
+        return start;
+    }
+
+    private static void endChunk(ByteBuffer out, int start) {
+        out.putInt(start, out.position() - start);
+    }
+
+}
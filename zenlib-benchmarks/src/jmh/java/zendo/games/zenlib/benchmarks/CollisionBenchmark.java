@@ -0,0 +1,161 @@
+package zendo.games.zenlib.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import zendo.games.zenlib.components.Collider;
+import zendo.games.zenlib.components.Hurtable;
+import zendo.games.zenlib.components.Mover;
+import zendo.games.zenlib.components.RayHit;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.Point;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    static final int tile_size = 16;
+    static final int columns = 256;
+    static final int rows = 64;
+    static final int walkers = 64;
+
+    @Param({"100", "1000", "5000"})
+    public int colliders;
+
+    private World world;
+    private Collider probe;
+    private Mover mover;
+    private Point start;
+    private Point[] offsets;
+    private int next;
+    private float[] rays;
+    private RayHit[] rayHits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1234);
+        world = new World();
+
+        // level: a solid border and some random platforms
+        Collider level = world.addEntity(0, 0).add(Collider.makeGrid(tile_size, columns, rows), Collider.class);
+        level.setMask(Mask.solid);
+        for (int x = 0; x < columns; x++) {
+            level.setCell(x, 0, true);
+            level.setCell(x, rows - 1, true);
+        }
+        for (int y = 0; y < rows; y++) {
+            level.setCell(0, y, true);
+            level.setCell(columns - 1, y, true);
+        }
+        for (int i = 0; i < 200; i++) {
+            int x = 2 + random.nextInt(columns - 10);
+            int y = 4 + random.nextInt(rows - 8);
+            for (int w = 0; w < 6; w++) {
+                level.setCell(x + w, y, true);
+            }
+        }
+
+        // scattered hitboxes, a quarter of them solid
+        int width = columns * tile_size;
+        int height = rows * tile_size;
+        for (int i = 0; i < colliders; i++) {
+            Entity entity = world.addEntity(random.nextInt(width), random.nextInt(height));
+            Collider collider = entity.add(Collider.makeRect(RectI.at(0, 0, 12, 12)), Collider.class);
+            collider.setMask((i % 4 == 0) ? Mask.solid : Mask.enemy);
+        }
+
+        // the thing doing the checking, in a free spot between the floor and the first platforms
+        Entity entity = world.addEntity(width / 2, tile_size + 1);
+        probe = entity.add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+        mover = entity.add(new Mover(), Mover.class);
+        mover.collider = probe;
+        start = Point.at(entity.position.x, entity.position.y);
+
+        // characters walking back and forth under gravity, getting hurt by the enemies they run into
+        Mover.OnHit turnAround = m -> m.speed.x = -m.speed.x;
+        Hurtable.OnHurt ignore = h -> h.stunTimer = 0;
+        for (int i = 0; i < walkers; i++) {
+            Entity walker = world.addEntity(tile_size + random.nextInt(width - 3 * tile_size), height / 2);
+            Collider body = walker.add(Collider.makeRect(RectI.at(0, 0, 8, 12)), Collider.class);
+            Mover walk = walker.add(new Mover(), Mover.class);
+            walk.collider = body;
+            walk.gravity = -400;
+            walk.speed.x = (i % 2 == 0) ? 80 : -80;
+            walk.onHitX = turnAround;
+            Hurtable hurtable = walker.add(new Hurtable(), Hurtable.class);
+            hurtable.collider = body;
+            hurtable.setHurtBy(Mask.enemy);
+            hurtable.onHurt = ignore;
+        }
+
+        offsets = new Point[256];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = Point.at(random.nextInt(65) - 32, random.nextInt(65) - 32);
+        }
+
+        // line of sight sized segments, up to 256 pixels in any direction
+        rays = new float[256 * 4];
+        rayHits = new RayHit[256];
+        for (int i = 0; i < rayHits.length; i++) {
+            float x = random.nextInt(width);
+            float y = random.nextInt(height);
+            rays[i * 4]     = x;
+            rays[i * 4 + 1] = y;
+            rays[i * 4 + 2] = x + random.nextInt(513) - 256;
+            rays[i * 4 + 3] = y + random.nextInt(513) - 256;
+            rayHits[i] = new RayHit();
+        }
+    }
+
+    @Benchmark
+    public boolean check() {
+        Point offset = offsets[next++ & (offsets.length - 1)];
+        return probe.check(Mask.solid, offset);
+    }
+
+    @Benchmark
+    public boolean checkNoOffset() {
+        return probe.check(Mask.enemy);
+    }
+
+    @Benchmark
+    public int moverAgainstGrid() {
+        // run into the floor, then slide back and forth
+        Point position = probe.entity().position;
+        position.set(start.x, start.y);
+        mover.moveY(-8);
+        mover.moveX(16);
+        mover.moveX(-16);
+        mover.moveY(8);
+        return position.x + position.y;
+    }
+
+    @Benchmark
+    public boolean raycast() {
+        int ray = (next++ & (rayHits.length - 1)) * 4;
+        return world.collisions().raycast(rays[ray], rays[ray + 1], rays[ray + 2], rays[ray + 3], Mask.solid, rayHits[0]);
+    }
+
+    @Benchmark
+    public int raycastBatch() {
+        return world.collisions().raycast(rays, 0, rayHits.length, Mask.solid, rayHits);
+    }
+
+    /**
+     * A whole simulated frame of movers and hurtables; with the gc profiler
+     * gc.alloc.rate.norm should stay at 0 B/op once everything has warmed up
+     */
+    @Benchmark
+    public void frame() {
+        world.update(1 / 60f);
+    }
+
+}
@@ -0,0 +1,137 @@
+package zendo.games.zenlib.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import zendo.games.zenlib.components.Mover;
+import zendo.games.zenlib.components.Timer;
+import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.World;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EcsBenchmark {
+
+    // a minimal renderable, draws one region at its entity position
+    public static class Quad extends Component {
+        static final TextureRegion region = new TextureRegion();
+
+        public Quad() {}
+
+        @Override
+        public void render(SpriteBatch batch) {
+            batch.draw(region, entity().position.x, entity().position.y, 1, 1);
+        }
+    }
+
+    private static final Component.Initializer<Timer> timer_init = new Component.Initializer<Timer>() {
+        @Override
+        public void init(Timer timer) {
+            timer.start(10);
+        }
+    };
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    private World world;
+    private Entity[] entities;
+    private Entity[] churned;
+    private int churnNext;
+    private RecordingBatch batch;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Headless.init();
+        batch = new RecordingBatch();
+        random = new Random(1234);
+
+        world = new World();
+        world.reserve(Timer.class, 64);
+        entities = new Entity[count];
+        for (int i = 0; i < count; i++) {
+            Entity entity = world.addEntity(i % 640, i / 640);
+            Mover mover = entity.add(Mover.class, null);
+            mover.speed.set(random.nextFloat() * 60f, random.nextFloat() * 60f);
+            entity.add(Timer.class, timer_init);
+            entity.add(Quad.class, null).setDepth(random.nextInt(16));
+            entities[i] = entity;
+        }
+
+        // short lived renderables, like projectiles, that are replaced a few at a time every frame
+        churned = new Entity[count / 10];
+        for (int i = 0; i < churned.length; i++) {
+            churned[i] = spawnQuad();
+        }
+    }
+
+    private Entity spawnQuad() {
+        Entity entity = world.addEntity(random.nextInt(640), random.nextInt(480));
+        entity.add(Quad.class, null).setDepth(random.nextInt(16));
+        return entity;
+    }
+
+    @Benchmark
+    public Entity addDestroyChurn() {
+        // steady state spawn and despawn, everything comes from the pools
+        Entity entity = world.addEntity(0, 0);
+        entity.add(Timer.class, timer_init);
+        world.destroyEntity(entity);
+        return entity;
+    }
+
+    @Benchmark
+    public void update() {
+        world.update(1 / 60f);
+    }
+
+    @Benchmark
+    public int render() {
+        batch.clear();
+        world.render(batch);
+        return batch.draws;
+    }
+
+    @Benchmark
+    public int renderWithDepthChanges() {
+        // one percent of the renderables change depth every frame
+        for (int i = 0; i < count / 100; i++) {
+            entities[random.nextInt(count)].get(Quad.class).setDepth(random.nextInt(16));
+        }
+        batch.clear();
+        world.render(batch);
+        return batch.draws;
+    }
+
+    @Benchmark
+    public int renderWithChurn() {
+        // one percent of the renderables are despawned and replaced every frame, oldest first
+        for (int i = 0; i < count / 100; i++) {
+            world.destroyEntity(churned[churnNext]);
+            churned[churnNext] = spawnQuad();
+            churnNext = (churnNext + 1) % churned.length;
+        }
+        batch.clear();
+        world.render(batch);
+        return batch.draws;
+    }
+
+    @Benchmark
+    public void entityGet(Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(entities[i].get(Mover.class));
+            blackhole.consume(entities[i].get(Timer.class));
+        }
+    }
+
+}
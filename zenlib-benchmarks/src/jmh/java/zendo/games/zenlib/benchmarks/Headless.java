@@ -0,0 +1,28 @@
+package zendo.games.zenlib.benchmarks;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.backends.headless.HeadlessNativesLoader;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import com.badlogic.gdx.graphics.GL20;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Sets up enough of libgdx to create Pixmaps and SpriteBatches without a window,
+ * the same way AsepritePacker does
+ */
+class Headless {
+
+    private static boolean initialized = false;
+
+    static synchronized void init() {
+        if (initialized) return;
+        HeadlessNativesLoader.load();
+        Gdx.graphics = new MockGraphics();
+        Gdx.files = new HeadlessFiles();
+        Gdx.gl = Gdx.gl20 = mock(GL20.class);
+        initialized = true;
+    }
+
+}
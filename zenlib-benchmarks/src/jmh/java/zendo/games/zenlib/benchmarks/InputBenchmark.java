@@ -0,0 +1,22 @@
+package zendo.games.zenlib.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import zendo.games.zenlib.input.Input;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputBenchmark {
+
+    @Benchmark
+    public boolean frame() {
+        Input.frame();
+        return Input.down(Input.Key.space);
+    }
+
+}
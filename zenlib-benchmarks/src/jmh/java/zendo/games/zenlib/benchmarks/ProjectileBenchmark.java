@@ -0,0 +1,111 @@
+package zendo.games.zenlib.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import zendo.games.zenlib.components.Collider;
+import zendo.games.zenlib.components.Mover;
+import zendo.games.zenlib.components.Projectiles;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A frame of bullets bouncing around a walled level, as one Projectiles batch versus an entity with a Mover each.
+ * Bullets that hit a wall are fired again so the count stays the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectileBenchmark {
+
+    static final int tile_size = 16;
+    static final int columns = 128;
+    static final int rows = 64;
+    static final float dt = 1 / 60f;
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    private World batchWorld;
+    private Projectiles projectiles;
+
+    private World moverWorld;
+    private Mover[] movers;
+
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        random = new Random(1234);
+
+        batchWorld = new World();
+        level(batchWorld);
+        projectiles = batchWorld.addEntity().add(new Projectiles(), Projectiles.class);
+        projectiles.width = 4;
+        projectiles.height = 4;
+        for (int i = 0; i < count; i++) {
+            projectiles.spawn(x(), y(), speed(), speed(), i);
+        }
+
+        moverWorld = new World();
+        level(moverWorld);
+        movers = new Mover[count];
+        Mover.OnHit respawn = mover -> {
+            mover.entity().position.set(x(), y());
+            mover.collider.moved();
+        };
+        for (int i = 0; i < count; i++) {
+            Entity entity = moverWorld.addEntity(x(), y());
+            Collider collider = entity.add(Collider.makeRect(RectI.at(0, 0, 4, 4)), Collider.class);
+            Mover mover = entity.add(new Mover(), Mover.class);
+            mover.collider = collider;
+            mover.speed.set(speed(), speed());
+            mover.onHitX = respawn;
+            mover.onHitY = respawn;
+            movers[i] = mover;
+        }
+    }
+
+    @Benchmark
+    public int batch() {
+        batchWorld.update(dt);
+        for (int i = 0; i < projectiles.hits(); i++) {
+            projectiles.spawn(x(), y(), speed(), speed(), projectiles.hitTag(i));
+        }
+        return projectiles.size();
+    }
+
+    @Benchmark
+    public int movers() {
+        moverWorld.update(dt);
+        return movers.length;
+    }
+
+    private void level(World world) {
+        Collider level = world.addEntity(0, 0).add(Collider.makeGrid(tile_size, columns, rows), Collider.class);
+        level.setMask(Mask.solid);
+        level.setCells(0, 0, columns, 1, true);
+        level.setCells(0, rows - 1, columns, 1, true);
+        level.setCells(0, 0, 1, rows, true);
+        level.setCells(columns - 1, 0, 1, rows, true);
+    }
+
+    private int x() {
+        return 2 * tile_size + random.nextInt((columns - 4) * tile_size);
+    }
+
+    private int y() {
+        return 2 * tile_size + random.nextInt((rows - 4) * tile_size);
+    }
+
+    private float speed() {
+        return random.nextInt(1200) - 600;
+    }
+
+}
@@ -0,0 +1,60 @@
+package zendo.games.zenlib.benchmarks;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * A SpriteBatch that only counts what it's asked to draw, so render benchmarks
+ * measure the engine side of rendering and not the GL driver.
+ * Requires {@link Headless#init()} to have been called.
+ */
+class RecordingBatch extends SpriteBatch {
+
+    int draws;
+    float checksum;
+
+    RecordingBatch() {
+        super(1, mock(ShaderProgram.class));
+    }
+
+    void clear() {
+        draws = 0;
+        checksum = 0;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y) {
+        draws++;
+        checksum += x + y;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float width, float height) {
+        draws++;
+        checksum += x + y;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation) {
+        draws++;
+        checksum += x + y;
+    }
+
+    @Override
+    public void draw(Texture texture, float[] spriteVertices, int offset, int count) {
+        draws += count / 20;
+        checksum += spriteVertices[offset];
+    }
+
+    @Override
+    public void setColor(Color tint) {}
+
+    @Override
+    public void setColor(float r, float g, float b, float a) {}
+
+}
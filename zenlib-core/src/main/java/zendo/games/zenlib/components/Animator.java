@@ -8,7 +8,7 @@ import zendo.games.zenlib.assets.Sprite;
 import zendo.games.zenlib.ecs.Component;
 import zendo.games.zenlib.utils.RectI;
 
-public class Animator extends Component {
+public class Animator extends Component implements Component.ParallelSafe {
 
     public Vector2 scale;
     public float rotation;
@@ -27,13 +27,11 @@ public class Animator extends Component {
     public Animator(String spriteName) {
         reset();
         sprite = Content.findSprite(spriteName);
-        tint = new Color(1f, 1f, 1f, 1f);
     }
 
     public Animator(String spriteName, String animationName) {
         reset();
         sprite = Content.findSprite(spriteName);
-        tint = new Color(1f, 1f, 1f, 1f);
         play(animationName);
     }
 
@@ -43,10 +41,13 @@ public class Animator extends Component {
         if (scale == null) {
             scale = new Vector2();
         }
+        if (tint == null) {
+            tint = new Color();
+        }
         scale.set(1, 1);
         rotation = 0;
         speed = 1;
-        tint = null;
+        tint.set(1f, 1f, 1f, 1f);
         sprite = null;
         animationIndex = 0;
         frameIndex = 0;
@@ -61,7 +62,7 @@ public class Animator extends Component {
             this.scale.set(animator.scale);
             this.rotation       = animator.rotation;
             this.speed          = animator.speed;
-            this.tint           = animator.tint;
+            this.tint.set(animator.tint);
             this.sprite         = animator.sprite;
             this.animationIndex = animator.animationIndex;
             this.frameIndex     = animator.frameIndex;
@@ -73,6 +74,13 @@ public class Animator extends Component {
         return sprite;
     }
 
+    public void setSprite(String spriteName) {
+        sprite = Content.findSprite(spriteName);
+        animationIndex = 0;
+        frameIndex = 0;
+        frameCounter = 0;
+    }
+
     public Sprite.Anim animation() {
         if (sprite != null && animationIndex >= 0 && animationIndex < sprite.animations.size()) {
             return sprite.animations.get(animationIndex);
@@ -0,0 +1,224 @@
+package zendo.games.zenlib.components;
+
+/**
+ * A level split into square chunks that can be read one at a time, for a {@link StreamingTilemap}.
+ *
+ * Layout, all big-endian:
+ *   header: magic, version, tile size, columns, rows, chunk size (six ints)
+ *   index:  per chunk, row by row, the offset (long) and length (int) of its record, length 0 for an empty chunk
+ *   record: chunk size * chunk size tile ids (shorts) row by row, then chunk size solid rows (ints, a bit per column)
+ *
+ * Encoding and decoding work on plain byte arrays so this also runs under GWT. Made from the whole file with
+ * {@link #read(byte[])} it's a Source that decodes straight from memory, which is the synchronous fallback where
+ * there's no random access to files; made from just the header and index with {@link #index(byte[])} it only
+ * answers where each record is, for a Source that reads the records from disk itself.
+ */
+public class ChunkFile implements StreamingTilemap.Source {
+
+    public static final int magic = 0x5A43484B; // ZCHK
+    public static final int version = 1;
+    public static final int header_bytes = 6 * 4;
+    public static final int entry_bytes = 8 + 4;
+    public static final int max_chunk_size = 32;
+
+    public final int tileSize;
+    public final int columns;
+    public final int rows;
+    public final int chunkSize;
+    public final int chunkColumns;
+    public final int chunkRows;
+
+    private final long[] offsets;
+    private final int[] lengths;
+    private final byte[] data;
+
+    private ChunkFile(byte[] bytes, boolean keep) {
+        assert(readInt(bytes, 0) == magic) : "Not a chunk file";
+        assert(readInt(bytes, 4) == version) : "Unsupported chunk file version";
+        tileSize  = readInt(bytes, 8);
+        columns   = readInt(bytes, 12);
+        rows      = readInt(bytes, 16);
+        chunkSize = readInt(bytes, 20);
+        chunkColumns = (columns + chunkSize - 1) / chunkSize;
+        chunkRows    = (rows + chunkSize - 1) / chunkSize;
+
+        int chunks = chunkColumns * chunkRows;
+        offsets = new long[chunks];
+        lengths = new int[chunks];
+        for (int i = 0; i < chunks; i++) {
+            int entry = header_bytes + i * entry_bytes;
+            offsets[i] = readLong(bytes, entry);
+            lengths[i] = readInt(bytes, entry + 8);
+        }
+        data = keep ? bytes : null;
+    }
+
+    /**
+     * A chunk file that's entirely in memory
+     */
+    public static ChunkFile read(byte[] bytes) {
+        return new ChunkFile(bytes, true);
+    }
+
+    /**
+     * Just the header and index of a chunk file, the first {@link #indexBytes(byte[])} bytes of it
+     */
+    public static ChunkFile index(byte[] bytes) {
+        return new ChunkFile(bytes, false);
+    }
+
+    /**
+     * The size of the header and index, given at least the header
+     */
+    public static int indexBytes(byte[] header) {
+        int columns   = readInt(header, 12);
+        int rows      = readInt(header, 16);
+        int chunkSize = readInt(header, 20);
+        int chunks = ((columns + chunkSize - 1) / chunkSize) * ((rows + chunkSize - 1) / chunkSize);
+        return header_bytes + chunks * entry_bytes;
+    }
+
+    public static int recordBytes(int chunkSize) {
+        return chunkSize * chunkSize * 2 + chunkSize * 4;
+    }
+
+    public long offset(int chunkX, int chunkY) {
+        return offsets[chunkX + chunkY * chunkColumns];
+    }
+
+    public int length(int chunkX, int chunkY) {
+        return lengths[chunkX + chunkY * chunkColumns];
+    }
+
+    @Override
+    public int tileSize() {
+        return tileSize;
+    }
+
+    @Override
+    public int columns() {
+        return columns;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public boolean read(int chunkX, int chunkY, short[] tiles, int[] solid) {
+        assert(data != null) : "Chunk file was opened as an index only";
+        int index = chunkX + chunkY * chunkColumns;
+        if (lengths[index] == 0) return false;
+        decode(data, (int) offsets[index], chunkSize, tiles, solid);
+        return true;
+    }
+
+    /**
+     * Unpack a chunk record starting at offset
+     */
+    public static void decode(byte[] bytes, int offset, int chunkSize, short[] tiles, int[] solid) {
+        int cells = chunkSize * chunkSize;
+        for (int i = 0; i < cells; i++) {
+            int at = offset + i * 2;
+            tiles[i] = (short) (((bytes[at] & 0xFF) << 8) | (bytes[at + 1] & 0xFF));
+        }
+        offset += cells * 2;
+        for (int i = 0; i < chunkSize; i++) {
+            solid[i] = readInt(bytes, offset + i * 4);
+        }
+    }
+
+    /**
+     * Pack a level into a chunk file, from a tilemap, a grid collider, or both when they're the same size
+     */
+    public static byte[] write(Tilemap tilemap, Collider collider, int chunkSize) {
+        assert(tilemap != null || collider != null) : "Nothing to write";
+        assert(chunkSize > 0 && chunkSize <= max_chunk_size) : "Chunk size must be between 1 and " + max_chunk_size;
+        Collider.Grid grid = (collider != null) ? collider.getGrid() : null;
+        int tileSize = (tilemap != null) ? tilemap.getTileSize() : grid.tileSize;
+        int columns  = (tilemap != null) ? tilemap.getNumCols()  : grid.columns;
+        int rows     = (tilemap != null) ? tilemap.getNumRows()  : grid.rows;
+        assert(grid == null || (grid.columns == columns && grid.rows == rows)) : "Tilemap and grid are different sizes";
+
+        int chunkColumns = (columns + chunkSize - 1) / chunkSize;
+        int chunkRows    = (rows + chunkSize - 1) / chunkSize;
+        int chunks = chunkColumns * chunkRows;
+        int record = recordBytes(chunkSize);
+
+        // size it for every chunk and trim the empty ones off at the end
+        byte[] bytes = new byte[header_bytes + chunks * entry_bytes + chunks * record];
+        writeInt(bytes, 0, magic);
+        writeInt(bytes, 4, version);
+        writeInt(bytes, 8, tileSize);
+        writeInt(bytes, 12, columns);
+        writeInt(bytes, 16, rows);
+        writeInt(bytes, 20, chunkSize);
+
+        int offset = header_bytes + chunks * entry_bytes;
+        for (int cy = 0; cy < chunkRows; cy++) {
+            for (int cx = 0; cx < chunkColumns; cx++) {
+                boolean any = false;
+                for (int y = 0; y < chunkSize; y++) {
+                    int row = 0;
+                    for (int x = 0; x < chunkSize; x++) {
+                        int column = cx * chunkSize + x;
+                        int line = cy * chunkSize + y;
+                        int tile = Tileset.empty;
+                        if (column < columns && line < rows) {
+                            if (tilemap != null) tile = tilemap.getTile(column, line);
+                            if (grid != null && grid.get(column, line)) row |= 1 << x;
+                        }
+                        int at = offset + (y * chunkSize + x) * 2;
+                        bytes[at]     = (byte) (tile >>> 8);
+                        bytes[at + 1] = (byte) tile;
+                        any |= (tile != Tileset.empty);
+                    }
+                    writeInt(bytes, offset + chunkSize * chunkSize * 2 + y * 4, row);
+                    any |= (row != 0);
+                }
+
+                int entry = header_bytes + (cx + cy * chunkColumns) * entry_bytes;
+                if (any) {
+                    writeLong(bytes, entry, offset);
+                    writeInt(bytes, entry + 8, record);
+                    offset += record;
+                }
+            }
+        }
+
+        if (offset == bytes.length) return bytes;
+        byte[] trimmed = new byte[offset];
+        System.arraycopy(bytes, 0, trimmed, 0, offset);
+        return trimmed;
+    }
+
+    public static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24)
+             | ((bytes[offset + 1] & 0xFF) << 16)
+             | ((bytes[offset + 2] & 0xFF) << 8)
+             |  (bytes[offset + 3] & 0xFF);
+    }
+
+    public static long readLong(byte[] bytes, int offset) {
+        return ((long) readInt(bytes, offset) << 32) | (readInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset]     = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        writeInt(bytes, offset, (int) (value >>> 32));
+        writeInt(bytes, offset + 4, (int) value);
+    }
+
+}
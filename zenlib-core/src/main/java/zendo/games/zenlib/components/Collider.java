@@ -7,44 +7,192 @@ import zendo.games.zenlib.utils.Calc;
 import zendo.games.zenlib.utils.Point;
 import zendo.games.zenlib.utils.RectI;
 
-import java.util.Arrays;
-
 public class Collider extends Component {
 
     public enum Shape { none, rect, grid }
 
+    /**
+     * Solid cells packed one bit each into rows of 64 bit words,
+     * so whole spans of a row can be tested a word at a time
+     */
     public static class Grid {
-        public int columns;
-        public int rows;
-        public int tileSize;
-        public boolean[] cells;
+        public final int columns;
+        public final int rows;
+        public final int tileSize;
+
+        // words per row
+        final int stride;
+        final long[] bits;
+
+        // a row's worth of bits for lining another grid up against this one
+        long[] scratch;
+
+        public Grid(int tileSize, int columns, int rows) {
+            this.tileSize = tileSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.stride = (columns + 63) >>> 6;
+            this.bits = new long[stride * rows];
+        }
+
+        public boolean get(int x, int y) {
+            return (bits[y * stride + (x >>> 6)] & (1L << x)) != 0;
+        }
+
+        public void set(int x, int y, boolean value) {
+            int index = y * stride + (x >>> 6);
+            if (value) bits[index] |=  (1L << x);
+            else       bits[index] &= ~(1L << x);
+        }
+
+        /**
+         * Set or clear the cells in columns [x, x + w) of rows [y, y + h)
+         */
+        public void fill(int x, int y, int w, int h, boolean value) {
+            if (w <= 0 || h <= 0) return;
+            int first = x >>> 6;
+            int last = (x + w - 1) >>> 6;
+            long firstMask = -1L << x;
+            long lastMask = -1L >>> (63 - ((x + w - 1) & 63));
+            for (int row = y; row < y + h; row++) {
+                int base = row * stride;
+                for (int word = first; word <= last; word++) {
+                    long mask = -1L;
+                    if (word == first) mask &= firstMask;
+                    if (word == last)  mask &= lastMask;
+                    if (value) bits[base + word] |=  mask;
+                    else       bits[base + word] &= ~mask;
+                }
+            }
+        }
+
+        /**
+         * Whether any cell in columns [left, right) of the row is set
+         */
+        public boolean any(int row, int left, int right) {
+            if (left >= right) return false;
+            int base = row * stride;
+            int first = left >>> 6;
+            int last = (right - 1) >>> 6;
+            long firstMask = -1L << left;
+            long lastMask = -1L >>> (63 - ((right - 1) & 63));
+            if (first == last) {
+                return (bits[base + first] & firstMask & lastMask) != 0;
+            }
+            if ((bits[base + first] & firstMask) != 0) return true;
+            for (int word = first + 1; word < last; word++) {
+                if (bits[base + word] != 0) return true;
+            }
+            return (bits[base + last] & lastMask) != 0;
+        }
+
+        /**
+         * The 64 cells of a row starting at column offset, which may be negative or past the end,
+         * with anything outside the grid empty
+         */
+        long window(int row, int offset) {
+            int word = offset >> 6;
+            int shift = offset & 63;
+            int base = row * stride;
+            long lo = (word >= 0 && word < stride) ? bits[base + word] : 0;
+            if (shift == 0) return lo;
+            long hi = (word + 1 >= 0 && word + 1 < stride) ? bits[base + word + 1] : 0;
+            return (lo >>> shift) | (hi << (64 - shift));
+        }
+
+        /**
+         * The number of bytes the cells take up
+         */
+        public int memory() {
+            return bits.length * 8;
+        }
     }
 
-    public int mask = 0;
-    public Point origin = Point.zero();
+    public int mask;
+    public Point origin;
 
-    private Shape shape = Shape.none;
+    private Shape shape;
     private RectI rect;
     private Grid grid;
 
+    // doesn't move, see setStatic
+    boolean isStatic;
+
+    // broadphase bookkeeping, owned by Collisions
+    boolean indexed;
+    int indexedMask;
+    boolean large;
+    int cellMinX, cellMinY, cellMaxX, cellMaxY;
+    int stamp;
+    int id = -1;
+
+    // this collider's begin and stay events, owned by Contacts
+    int contactFirst = -1;
+    int contactFrame = -1;
+    // the number of watches this was added to with Contacts.watch(Collider, int)
+    int watching;
+
     public Collider() {
         visible = true;
         active = true;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        // origin and rect belong to this instance and are reused when it's pooled
+        if (origin == null) {
+            origin = Point.zero();
+        }
+        if (rect == null) {
+            rect = new RectI();
+        }
+        mask = 0;
+        isStatic = false;
+        origin.set(0, 0);
+        shape = Shape.none;
+        rect.set(0, 0, 0, 0);
+        grid = null;
+    }
+
     @Override
     public <T extends Component> void copyFrom(T other) {
         super.copyFrom(other);
         if (other instanceof Collider) {
             Collider collider = (Collider) other;
             this.mask = collider.mask;
-            this.origin = collider.origin;
+            this.isStatic = collider.isStatic;
+            this.origin.set(collider.origin.x, collider.origin.y);
             this.shape = collider.shape;
-            this.rect = collider.rect;
+            this.rect.set(collider.rect);
             this.grid = collider.grid;
         }
     }
 
+    @Override
+    public void awake() {
+        world().collisions().add(this);
+    }
+
+    @Override
+    public void destroyed() {
+        Collisions collisions = world().collisions();
+        collisions.remove(this);
+        if (watching > 0) {
+            collisions.contacts().forget(this);
+        }
+    }
+
+    /**
+     * Let the broadphase know this collider was moved by something other than its Mover,
+     * otherwise it catches up at the start of the next World update
+     */
+    public void moved() {
+        if (indexed) {
+            world().collisions().update(this);
+        }
+    }
+
     public static Collider makeRect(RectI rect) {
         Collider collider = new Collider();
         collider.shape = Shape.rect;
@@ -55,15 +203,56 @@ public class Collider extends Component {
     public static Collider makeGrid(int tileSize, int columns, int rows) {
         Collider collider = new Collider();
         collider.shape = Shape.grid;
-        collider.grid = new Grid();
-        collider.grid.tileSize = tileSize;
-        collider.grid.columns = columns;
-        collider.grid.rows = rows;
-        collider.grid.cells = new boolean[columns * rows];
-        Arrays.fill(collider.grid.cells, false);
+        collider.grid = new Grid(tileSize, columns, rows);
         return collider;
     }
 
+    /**
+     * Turn this collider into a rectangle in place, for use from a {@link Component.Initializer}
+     */
+    public void initRect(int x, int y, int w, int h) {
+        shape = Shape.rect;
+        grid = null;
+        rect.set(x, y, w, h);
+        moved();
+    }
+
+    /**
+     * Turn this collider into an empty grid in place, for use from a {@link Component.Initializer}
+     */
+    public void initGrid(int tileSize, int columns, int rows) {
+        shape = Shape.grid;
+        grid = new Grid(tileSize, columns, rows);
+        moved();
+    }
+
+    /**
+     * Change the mask and move the collider to the matching buckets right away.
+     * Assigning the field directly works too, but only takes effect at the start of the next World update.
+     */
+    public void setMask(int mask) {
+        this.mask = mask;
+        moved();
+    }
+
+    /**
+     * Mark this collider as one that doesn't move, like level geometry or spikes.
+     * Static colliders are kept in an index that's cheaper to query but has to be re-sorted whenever
+     * one of them changes, and aren't checked for movement every frame, so call {@link #moved()}
+     * after moving one or changing its mask.
+     */
+    public void setStatic(boolean value) {
+        if (indexed) {
+            world().collisions().setStatic(this, value);
+        } else {
+            isStatic = value;
+        }
+    }
+
+    public boolean isStatic() {
+        return isStatic;
+    }
+
     public Shape shape() {
         return shape;
     }
@@ -75,12 +264,15 @@ public class Collider extends Component {
 
     public void setRect(RectI rect) {
         assert (shape == Shape.rect) : "Collider is not a Rectangle";
-        this.rect = rect;
+        // copied rather than kept, the rect is often a hitbox shared by every user of a Sprite
+        this.rect.set(rect);
+        moved();
     }
 
     public void setRect(int x, int y, int w, int h) {
         assert (shape == Shape.rect) : "Collider is not a Rectangle";
         this.rect.set(x, y, w, h);
+        moved();
     }
 
     public Grid getGrid() {
@@ -91,63 +283,99 @@ public class Collider extends Component {
     public boolean getCell(int x, int y) {
         assert (shape == Shape.grid) : "Collider is not a Grid";
         assert (x >= 0 && y >= 0 && x < grid.columns && y < grid.rows) : "Cell is out of bounds";
-        return grid.cells[x + y * grid.columns];
+        return grid.get(x, y);
     }
 
     public void setCell(int x, int y, boolean value) {
         assert (shape == Shape.grid) : "Collider is not a Grid";
         assert (x >= 0 && y >= 0 && x < grid.columns && y < grid.rows) : "Cell is out of bounds";
-        grid.cells[x + y * grid.columns] = value;
+        grid.set(x, y, value);
+        journal(x, y, 1, 1);
     }
 
     public void setCells(int x, int y, int w, int h, boolean value) {
         assert (shape == Shape.grid) : "Collider is not a Grid";
-        assert (x >= 0 && y >= 0 && x < grid.columns && x + w < grid.columns && y < grid.rows && y + h < grid.rows) : "Cell is out of bounds";
-        for (int ix = x; ix < x + w; ix++) {
-            for (int iy = y; iy < y + h; iy++) {
-                setCell(ix, iy, value);
-            }
+        assert (x >= 0 && y >= 0 && x + w <= grid.columns && y + h <= grid.rows) : "Cell is out of bounds";
+        grid.fill(x, y, w, h, value);
+        journal(x, y, w, h);
+    }
+
+    // tell the world's journal, if this is in a world yet
+    private void journal(int x, int y, int w, int h) {
+        if (world() != null) {
+            world().journal().mark(x, y, w, h, TileJournal.solid);
         }
     }
 
     public boolean check(int mask) {
-        return check(mask, Point.zero());
+        return check(mask, 0, 0);
     }
 
     public boolean check(int mask, Point offset) {
-        Collider other = world().first(Collider.class);
-        while (other != null) {
-            if (other != this
-             && (other.mask & mask) == mask
-             && overlaps(other, offset)) {
-                return true;
-            }
+        return check(mask, offset.x, offset.y);
+    }
 
-            other = (Collider) other.next();
-        }
+    public boolean check(int mask, int dx, int dy) {
+        return world().collisions().check(this, mask, dx, dy);
+    }
 
+    /**
+     * Whether a rectangle in world space overlaps this collider
+     */
+    public boolean overlaps(int x, int y, int w, int h) {
+        if (shape == Shape.rect) {
+            int rx = entity().position.x + origin.x + rect.x;
+            int ry = entity().position.y + origin.y + rect.y;
+            return x < rx + rect.w && rx < x + w
+                && y < ry + rect.h && ry < y + h;
+        }
+        else if (shape == Shape.grid) {
+            return rectToGrid(x, y, w, h, this);
+        }
         return false;
     }
 
+    /**
+     * How far this collider can move along one axis, up to distance pixels, before it touches
+     * something with the mask, which is what a Mover stepping a pixel at a time would end up at.
+     * dirX and dirY give the direction, one of them is 0 and the other is 1 or -1.
+     * See {@link #castHit()} for what was in the way.
+     */
+    public int cast(int mask, int dirX, int dirY, int distance) {
+        return world().collisions().cast(this, mask, dirX, dirY, distance);
+    }
+
+    /**
+     * The collider that stopped the last cast in this world, or null if nothing did
+     */
+    public Collider castHit() {
+        return world().collisions().castHit();
+    }
+
     public boolean overlaps(Collider other) {
-        return overlaps(other, Point.zero());
+        return overlaps(other, 0, 0);
     }
 
     public boolean overlaps(Collider other, Point offset) {
+        return overlaps(other, offset.x, offset.y);
+    }
+
+    public boolean overlaps(Collider other, int dx, int dy) {
         if (shape == Shape.rect) {
             if (other.shape == Shape.rect) {
-                return rectToRect(this, other, offset);
+                return rectToRect(this, other, dx, dy);
             }
             else if (other.shape == Shape.grid) {
-                return rectToGrid(this, other, offset);
+                return rectToGrid(this, other, dx, dy);
             }
         }
         else if (shape == Shape.grid) {
             if (other.shape == Shape.rect) {
-                return rectToGrid(other, this, offset);
+                // moving the grid one way is the same as moving the rect the other way
+                return rectToGrid(other, this, -dx, -dy);
             }
             else if (other.shape == Shape.grid) {
-                assert(false) : "Grid->Grid overlap checks not supported";
+                return gridToGrid(this, other, dx, dy);
             }
         }
 
@@ -163,70 +391,217 @@ public class Collider extends Component {
             shapes.setColor(color);
             if (shape == Shape.rect) {
                 float x1 = origin.x + rect.x + entity().position.x;
-                float y1 = origin.x + rect.y + entity().position.y;
+                float y1 = origin.y + rect.y + entity().position.y;
                 shapes.rect(x1, y1, rect.w, rect.h);
             }
             else if (shape == Shape.grid) {
-                for (int x = 0; x < grid.columns; x++) {
-                    for (int y = 0; y < grid.rows; y++) {
-                        if (!grid.cells[x + y * grid.columns]) continue;
-
-                        RectI rect = RectI.at(
-                                x * grid.tileSize + entity().position.x,
-                                y * grid.tileSize + entity().position.y,
-                                grid.tileSize, grid.tileSize);
-                        float x1 = origin.x + rect.x;
-                        float y1 = origin.y + rect.y;
-                        shapes.rect(x1, y1, rect.w, rect.h);
+                float x0 = origin.x + entity().position.x;
+                float y0 = origin.y + entity().position.y;
+                for (int y = 0; y < grid.rows; y++) {
+                    // walk the set bits of the row
+                    for (int word = 0; word < grid.stride; word++) {
+                        long bits = grid.bits[y * grid.stride + word];
+                        while (bits != 0) {
+                            int x = (word << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            shapes.rect(x0 + x * grid.tileSize, y0 + y * grid.tileSize, grid.tileSize, grid.tileSize);
+                        }
                     }
                 }
-
             }
             shapes.setColor(Color.WHITE);
         }
     }
 
-    private static boolean rectToRect(Collider a, Collider b, Point offset) {
-        RectI ar = RectI.at(
-                  a.entity().position.x + a.origin.x + a.rect.x + offset.x
-                , a.entity().position.y + a.origin.y + a.rect.y + offset.y
-                , a.rect.w, a.rect.h);
+    // world space bounds, right and top are exclusive
+
+    int left() {
+        int x = entity().position.x + origin.x;
+        return (shape == Shape.rect) ? x + rect.x : x;
+    }
 
-        RectI br = RectI.at(
-                  b.entity().position.x + b.origin.x + b.rect.x
-                , b.entity().position.y + b.origin.y + b.rect.y
-                , b.rect.w, b.rect.h);
+    int bottom() {
+        int y = entity().position.y + origin.y;
+        return (shape == Shape.rect) ? y + rect.y : y;
+    }
 
-        return ar.overlaps(br);
+    int right() {
+        return left() + ((shape == Shape.rect) ? rect.w : grid.columns * grid.tileSize);
+    }
+
+    int top() {
+        return bottom() + ((shape == Shape.rect) ? rect.h : grid.rows * grid.tileSize);
+    }
+
+    /**
+     * The number of whole steps this rect can take in the direction (dirX, dirY) before it
+     * overlaps other, or distance if it can go all the way
+     */
+    int sweep(Collider other, int dirX, int dirY, int distance) {
+        if (other.shape == Shape.rect) {
+            return rectSweepRect(this, other, dirX, dirY, distance);
+        }
+        else if (other.shape == Shape.grid) {
+            return rectSweepGrid(this, other, dirX, dirY, distance);
+        }
+        return distance;
     }
 
-    private static boolean rectToGrid(Collider a, Collider b, Point offset) {
-        // get a relative rectangle to the grid
-        RectI rect = new RectI();
-        rect.x = a.origin.x + a.rect.x + a.entity().position.x + offset.x - b.entity().position.x;
-        rect.y = a.origin.y + a.rect.y + a.entity().position.y + offset.y - b.entity().position.y;
-        rect.w = a.rect.w;
-        rect.h = a.rect.h;
+    /**
+     * Whether the segment from (x0, y0) to (x0 + dx, y0 + dy) runs into this collider before hit.fraction,
+     * and if it does, record where in hit
+     */
+    boolean raycast(float x0, float y0, float dx, float dy, RayHit hit) {
+        if (shape == Shape.rect) {
+            return rayToRect(this, x0, y0, dx, dy, hit);
+        }
+        else if (shape == Shape.grid) {
+            return rayToGrid(this, x0, y0, dx, dy, hit);
+        }
+        return false;
+    }
+
+    private static int rectSweepRect(Collider a, Collider b, int dirX, int dirY, int distance) {
+        int ax = a.entity().position.x + a.origin.x + a.rect.x;
+        int ay = a.entity().position.y + a.origin.y + a.rect.y;
+        int bx = b.entity().position.x + b.origin.x + b.rect.x;
+        int by = b.entity().position.y + b.origin.y + b.rect.y;
+
+        // the range of offsets along the axis that overlap, exclusive, provided the other axis overlaps at all
+        int lo, hi;
+        if (dirX != 0) {
+            if (!(ay < by + b.rect.h && by < ay + a.rect.h)) return distance;
+            lo = bx - ax - a.rect.w;
+            hi = bx + b.rect.w - ax;
+        } else {
+            if (!(ax < bx + b.rect.w && bx < ax + a.rect.w)) return distance;
+            lo = by - ay - a.rect.h;
+            hi = by + b.rect.h - ay;
+        }
+
+        // in steps along the direction
+        int sign = dirX + dirY;
+        if (sign < 0) {
+            int flipped = -lo;
+            lo = -hi;
+            hi = flipped;
+        }
+
+        int first = Math.max(1, lo + 1);
+        return (first < hi && first <= distance) ? first - 1 : distance;
+    }
+
+    private static int rectSweepGrid(Collider a, Collider b, int dirX, int dirY, int distance) {
+        // the first step is an ordinary check, after that the only way to run into something
+        // is for a column (or row) of cells that wasn't covered yet to come into the rect
+        if (rectToGrid(a, b, dirX, dirY)) {
+            return 0;
+        }
+
+        // relative to the grid, as in rectToGrid
+        int x = a.entity().position.x + a.origin.x + a.rect.x - (b.entity().position.x + b.origin.x);
+        int y = a.entity().position.y + a.origin.y + a.rect.y - (b.entity().position.y + b.origin.y);
+        int w = a.rect.w;
+        int h = a.rect.h;
+        Grid grid = b.grid;
+        int tileSize = grid.tileSize;
+
+        if (dirX != 0) {
+            int bottom = Math.max(floorDiv(y, tileSize), 0);
+            int top    = Math.min(floorDiv(y + h + tileSize - 1, tileSize), grid.rows);
+            if (bottom >= top) return distance;
+
+            if (dirX > 0) {
+                // column c comes in once the right edge passes c * tileSize
+                int c = Math.max(floorDiv(x + 1 + w + tileSize - 1, tileSize), 0);
+                for (; c < grid.columns; c++) {
+                    int step = c * tileSize - x - w + 1;
+                    if (step > distance) break;
+                    if (anyInColumn(grid, c, bottom, top)) return step - 1;
+                }
+            } else {
+                // column c comes in once the left edge passes (c + 1) * tileSize
+                int c = Math.min(floorDiv(x - 1, tileSize) - 1, grid.columns - 1);
+                for (; c >= 0; c--) {
+                    int step = x - (c + 1) * tileSize + 1;
+                    if (step > distance) break;
+                    if (anyInColumn(grid, c, bottom, top)) return step - 1;
+                }
+            }
+        } else {
+            int left  = Math.max(floorDiv(x, tileSize), 0);
+            int right = Math.min(floorDiv(x + w + tileSize - 1, tileSize), grid.columns);
+            if (left >= right) return distance;
+
+            if (dirY > 0) {
+                int r = Math.max(floorDiv(y + 1 + h + tileSize - 1, tileSize), 0);
+                for (; r < grid.rows; r++) {
+                    int step = r * tileSize - y - h + 1;
+                    if (step > distance) break;
+                    if (grid.any(r, left, right)) return step - 1;
+                }
+            } else {
+                int r = Math.min(floorDiv(y - 1, tileSize) - 1, grid.rows - 1);
+                for (; r >= 0; r--) {
+                    int step = y - (r + 1) * tileSize + 1;
+                    if (step > distance) break;
+                    if (grid.any(r, left, right)) return step - 1;
+                }
+            }
+        }
+
+        return distance;
+    }
+
+    private static boolean anyInColumn(Grid grid, int column, int bottom, int top) {
+        for (int row = bottom; row < top; row++) {
+            if (grid.get(column, row)) return true;
+        }
+        return false;
+    }
+
+    private static boolean rectToRect(Collider a, Collider b, int dx, int dy) {
+        int ax = a.entity().position.x + a.origin.x + a.rect.x + dx;
+        int ay = a.entity().position.y + a.origin.y + a.rect.y + dy;
+        int bx = b.entity().position.x + b.origin.x + b.rect.x;
+        int by = b.entity().position.y + b.origin.y + b.rect.y;
+
+        return ax < bx + b.rect.w
+            && bx < ax + a.rect.w
+            && ay < by + b.rect.h
+            && by < ay + a.rect.h;
+    }
+
+    private static boolean rectToGrid(Collider a, Collider b, int dx, int dy) {
+        return rectToGrid(
+                  a.entity().position.x + a.origin.x + a.rect.x + dx
+                , a.entity().position.y + a.origin.y + a.rect.y + dy
+                , a.rect.w, a.rect.h, b);
+    }
+
+    private static boolean rectToGrid(int x, int y, int w, int h, Collider b) {
+        // get the rectangle relative to the grid, so that the grid spans (0..col*tileSz,0..row*tileSz)
+        x -= b.entity().position.x + b.origin.x;
+        y -= b.entity().position.y + b.origin.y;
 
         // first do a sanity check that the Rect is within the bounds of the Grid
-        RectI gridBounds = RectI.at(b.origin.x, b.origin.y, b.grid.columns * b.grid.tileSize, b.grid.rows * b.grid.tileSize);
-        if (!rect.overlaps(gridBounds)) {
+        Grid grid = b.grid;
+        int tileSize = grid.tileSize;
+        if (x >= grid.columns * tileSize || x + w <= 0
+         || y >= grid.rows * tileSize    || y + h <= 0) {
             return false;
         }
 
         // get the cells the rectangle overlaps
-        // subtract out the rect collider's origin to put it back in the same space as the grid (0..col*tileSz,0..row*tileSz)
-        int left   = Calc.clampInt((int) Calc.floor  (rect.x        / (float) b.grid.tileSize), 0, b.grid.columns);
-        int right  = Calc.clampInt((int) Calc.ceiling(rect.right()  / (float) b.grid.tileSize), 0, b.grid.columns);
-        int top    = Calc.clampInt((int) Calc.floor  (rect.y        / (float) b.grid.tileSize), 0, b.grid.rows);
-        int bottom = Calc.clampInt((int) Calc.ceiling(rect.bottom() / (float) b.grid.tileSize), 0, b.grid.rows);
-
-        // check each cell
-        for (int x = left; x < right; x++) {
-            for (int y = top; y < bottom; y++) {
-                if (b.grid.cells[x + y * b.grid.columns]) {
-                    return true;
-                }
+        int left   = Calc.clampInt(floorDiv(x, tileSize),                0, grid.columns);
+        int right  = Calc.clampInt(floorDiv(x + w + tileSize - 1, tileSize), 0, grid.columns);
+        int top    = Calc.clampInt(floorDiv(y, tileSize),                0, grid.rows);
+        int bottom = Calc.clampInt(floorDiv(y + h + tileSize - 1, tileSize), 0, grid.rows);
+
+        // check each row a word at a time
+        for (int row = top; row < bottom; row++) {
+            if (grid.any(row, left, right)) {
+                return true;
             }
         }
 
@@ -234,4 +609,277 @@ public class Collider extends Component {
         return false;
     }
 
+    // slab test, one axis at a time narrowing the range of the segment that's inside the rect
+    private static boolean rayToRect(Collider b, float x0, float y0, float dx, float dy, RayHit hit) {
+        float left   = b.entity().position.x + b.origin.x + b.rect.x;
+        float bottom = b.entity().position.y + b.origin.y + b.rect.y;
+        float right  = left + b.rect.w;
+        float top    = bottom + b.rect.h;
+
+        float near = 0;
+        float far = hit.fraction;
+        int normalX = 0;
+        int normalY = 0;
+
+        if (dx == 0) {
+            if (x0 < left || x0 >= right) return false;
+        } else {
+            float t1 = (left - x0) / dx;
+            float t2 = (right - x0) / dx;
+            if (dx < 0) {
+                float swap = t1;
+                t1 = t2;
+                t2 = swap;
+            }
+            if (t1 > near) {
+                near = t1;
+                normalX = (dx > 0) ? -1 : 1;
+            }
+            far = Math.min(far, t2);
+            if (near >= far) return false;
+        }
+
+        if (dy == 0) {
+            if (y0 < bottom || y0 >= top) return false;
+        } else {
+            float t1 = (bottom - y0) / dy;
+            float t2 = (top - y0) / dy;
+            if (dy < 0) {
+                float swap = t1;
+                t1 = t2;
+                t2 = swap;
+            }
+            if (t1 > near) {
+                near = t1;
+                normalX = 0;
+                normalY = (dy > 0) ? -1 : 1;
+            }
+            far = Math.min(far, t2);
+            if (near >= far) return false;
+        }
+
+        if (near >= hit.fraction) return false;
+        hit.collider = b;
+        hit.fraction = near;
+        hit.normalX = normalX;
+        hit.normalY = normalY;
+        hit.cellX = -1;
+        hit.cellY = -1;
+        return true;
+    }
+
+    // Amanatides & Woo: walk the cells the segment passes through in order, stopping at the first solid one
+    private static boolean rayToGrid(Collider b, float x0, float y0, float dx, float dy, RayHit hit) {
+        Grid grid = b.grid;
+
+        // in cells relative to the grid, so that the grid spans (0..columns, 0..rows)
+        float size = grid.tileSize;
+        float px = (x0 - b.entity().position.x - b.origin.x) / size;
+        float py = (y0 - b.entity().position.y - b.origin.y) / size;
+        float vx = dx / size;
+        float vy = dy / size;
+
+        // clip the segment to the grid's bounds
+        float enter = 0;
+        float exit = hit.fraction;
+        int normalX = 0;
+        int normalY = 0;
+        if (vx == 0) {
+            if (px < 0 || px >= grid.columns) return false;
+        } else {
+            float t1 = -px / vx;
+            float t2 = (grid.columns - px) / vx;
+            if (vx < 0) {
+                float swap = t1;
+                t1 = t2;
+                t2 = swap;
+            }
+            if (t1 > enter) {
+                enter = t1;
+                normalX = (vx > 0) ? -1 : 1;
+            }
+            exit = Math.min(exit, t2);
+        }
+        if (vy == 0) {
+            if (py < 0 || py >= grid.rows) return false;
+        } else {
+            float t1 = -py / vy;
+            float t2 = (grid.rows - py) / vy;
+            if (vy < 0) {
+                float swap = t1;
+                t1 = t2;
+                t2 = swap;
+            }
+            if (t1 > enter) {
+                enter = t1;
+                normalX = 0;
+                normalY = (vy > 0) ? -1 : 1;
+            }
+            exit = Math.min(exit, t2);
+        }
+        if (enter >= exit) return false;
+
+        // the cell it starts in, clamped since rounding can leave the entry point a hair outside
+        int cx = Calc.clampInt((int) Math.floor(px + vx * enter), 0, grid.columns - 1);
+        int cy = Calc.clampInt((int) Math.floor(py + vy * enter), 0, grid.rows - 1);
+
+        // which way it steps, how far along the segment the next cell boundary on each axis is,
+        // and how far along it is from one boundary to the next
+        int stepX = (vx > 0) ? 1 : (vx < 0) ? -1 : 0;
+        int stepY = (vy > 0) ? 1 : (vy < 0) ? -1 : 0;
+        float nextX = (vx > 0) ? (cx + 1 - px) / vx : (vx < 0) ? (cx - px) / vx : Float.POSITIVE_INFINITY;
+        float nextY = (vy > 0) ? (cy + 1 - py) / vy : (vy < 0) ? (cy - py) / vy : Float.POSITIVE_INFINITY;
+        float deltaX = (vx != 0) ? Math.abs(1 / vx) : Float.POSITIVE_INFINITY;
+        float deltaY = (vy != 0) ? Math.abs(1 / vy) : Float.POSITIVE_INFINITY;
+
+        float t = enter;
+        while (true) {
+            if (grid.get(cx, cy)) {
+                hit.collider = b;
+                hit.fraction = t;
+                hit.normalX = normalX;
+                hit.normalY = normalY;
+                hit.cellX = cx;
+                hit.cellY = cy;
+                return true;
+            }
+
+            if (nextX < nextY) {
+                t = nextX;
+                cx += stepX;
+                nextX += deltaX;
+                normalX = -stepX;
+                normalY = 0;
+                if (cx < 0 || cx >= grid.columns) return false;
+            } else {
+                t = nextY;
+                cy += stepY;
+                nextY += deltaY;
+                normalX = 0;
+                normalY = -stepY;
+                if (cy < 0 || cy >= grid.rows) return false;
+            }
+            if (t >= exit) return false;
+        }
+    }
+
+    private static boolean gridToGrid(Collider a, Collider b, int dx, int dy) {
+        Grid ga = a.grid;
+        Grid gb = b.grid;
+
+        // a's corner relative to b's
+        int x = a.entity().position.x + a.origin.x + dx - (b.entity().position.x + b.origin.x);
+        int y = a.entity().position.y + a.origin.y + dy - (b.entity().position.y + b.origin.y);
+
+        // b's rows that a reaches
+        int bottom = Math.max(floorDiv(y, gb.tileSize), 0);
+        int top    = Math.min(floorDiv(y + ga.rows * ga.tileSize + gb.tileSize - 1, gb.tileSize), gb.rows);
+        if (bottom >= top
+         || x >= gb.columns * gb.tileSize
+         || x + ga.columns * ga.tileSize <= 0) {
+            return false;
+        }
+
+        if (ga.tileSize == gb.tileSize) {
+            // a's cells are b's shifted by a whole number of columns and rows, plus a part of a cell when
+            // they don't line up, in which case each cell of b is covered by up to two columns and two rows of a
+            int tileSize = gb.tileSize;
+            int columns = floorDiv(x, tileSize);
+            int rows = floorDiv(y, tileSize);
+            boolean splitX = (x - columns * tileSize) != 0;
+            boolean splitY = (y - rows * tileSize) != 0;
+            for (int row = bottom; row < top; row++) {
+                int aRow = row - rows;
+                int base = row * gb.stride;
+                for (int word = 0; word < gb.stride; word++) {
+                    long cells = gb.bits[base + word];
+                    if (cells == 0) continue;
+
+                    int offset = (word << 6) - columns;
+                    long covered = 0;
+                    if (aRow >= 0 && aRow < ga.rows) {
+                        covered |= ga.window(aRow, offset);
+                        if (splitX) covered |= ga.window(aRow, offset - 1);
+                    }
+                    if (splitY && aRow - 1 >= 0 && aRow - 1 < ga.rows) {
+                        covered |= ga.window(aRow - 1, offset);
+                        if (splitX) covered |= ga.window(aRow - 1, offset - 1);
+                    }
+                    if ((cells & covered) != 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // different tile sizes: spread the cells of a that cover each row of b out over b's columns, then intersect
+        if (gb.scratch == null) {
+            gb.scratch = new long[gb.stride];
+        }
+        long[] spread = gb.scratch;
+        for (int row = bottom; row < top; row++) {
+            for (int word = 0; word < gb.stride; word++) {
+                spread[word] = 0;
+            }
+
+            int rowBottom = row * gb.tileSize - y;
+            int aBottom = Math.max(floorDiv(rowBottom, ga.tileSize), 0);
+            int aTop    = Math.min(floorDiv(rowBottom + gb.tileSize + ga.tileSize - 1, ga.tileSize), ga.rows);
+            boolean any = false;
+            for (int aRow = aBottom; aRow < aTop; aRow++) {
+                int base = aRow * ga.stride;
+                for (int word = 0; word < ga.stride; word++) {
+                    long cells = ga.bits[base + word];
+                    while (cells != 0) {
+                        int column = (word << 6) + Long.numberOfTrailingZeros(cells);
+                        cells &= cells - 1;
+
+                        // the columns of b this cell of a covers
+                        int left  = Math.max(floorDiv(x + column * ga.tileSize, gb.tileSize), 0);
+                        int right = Math.min(floorDiv(x + (column + 1) * ga.tileSize + gb.tileSize - 1, gb.tileSize), gb.columns);
+                        if (left < right) {
+                            setRange(spread, left, right);
+                            any = true;
+                        }
+                    }
+                }
+            }
+            if (!any) continue;
+
+            int base = row * gb.stride;
+            for (int word = 0; word < gb.stride; word++) {
+                if ((gb.bits[base + word] & spread[word]) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void setRange(long[] words, int left, int right) {
+        int first = left >>> 6;
+        int last = (right - 1) >>> 6;
+        long firstMask = -1L << left;
+        long lastMask = -1L >>> (63 - ((right - 1) & 63));
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int word = first + 1; word < last; word++) {
+            words[word] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+
+    // rounds towards negative infinity, unlike integer division
+    private static int floorDiv(int value, int divisor) {
+        int quotient = value / divisor;
+        if ((value % divisor != 0) && ((value < 0) != (divisor < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+
 }
@@ -0,0 +1,733 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.utils.IntIntMap;
+import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.ecs.ComponentStore;
+import zendo.games.zenlib.ecs.World;
+
+/**
+ * The broadphase for all the Colliders in a World.
+ *
+ * Rect and grid colliders are bucketed into a spatial hash by their bounds, so a check only
+ * tests the colliders that are near the one doing the checking. Colliders that would
+ * cover too many cells, like the Grid of a whole level, are kept in a separate list that
+ * every check tests. A collider's cells are updated when its Mover moves it, when
+ * its rect changes, when {@link Collider#moved()} is called, and for everything else
+ * once per frame at the start of {@link World#update(float)}.
+ *
+ * There is one of these indexes per mask bit as well, holding only the colliders
+ * that carry that bit. A check uses the smallest one of the bits it asks for,
+ * so looking for Mask.solid never visits an enemy or attack hitbox.
+ *
+ * Colliders flagged static with {@link Collider#setStatic(boolean)} go in a sort-and-sweep index
+ * instead of the hash, which is only sorted again after one of them is added, removed or moved.
+ * They're also skipped by the per-frame sync, so moving one needs a call to {@link Collider#moved()}.
+ *
+ * The pairs that are overlapping at the start of each update are available from {@link #contacts()}.
+ */
+public class Collisions {
+
+    public static final int default_cell_size = 64;
+
+    // colliders that span more cells than this skip the hash
+    static final int max_cells = 64;
+
+    private static final int mask_bits = 32;
+
+    private static final int collider_type = Component.Types.id(Collider.class);
+
+    /**
+     * A spatial hash for the colliders that move, a sorted index for the ones that don't,
+     * and a list of the ones that are too big for either
+     */
+    static class Bucket {
+        SpatialHash hash;
+        StaticIndex statics;
+        Collider[] large = new Collider[4];
+        int largeCount;
+        int size;
+
+        // where the candidate walk started by begin() is up to
+        private static final int walk_large = 0;
+        private static final int walk_statics = 1;
+        private static final int walk_hash = 2;
+        private static final int walk_done = 3;
+        private int walkPhase = walk_done;
+        private int walkIndex;
+        private int walkLeft, walkBottom, walkRight, walkTop;
+        private int walkMinX, walkMaxX, walkMaxY;
+        private int walkCellX, walkCellY;
+        private SpatialHash.Cell walkCell;
+        private int walkStamp;
+
+        Bucket(int cellSize) {
+            hash = new SpatialHash(cellSize);
+            statics = new StaticIndex();
+        }
+
+        void insert(Collider collider) {
+            if (collider.large) {
+                if (largeCount == large.length) {
+                    Collider[] resized = new Collider[large.length * 2];
+                    System.arraycopy(large, 0, resized, 0, largeCount);
+                    large = resized;
+                }
+                large[largeCount++] = collider;
+            } else if (collider.isStatic) {
+                statics.add(collider);
+            } else {
+                hash.insert(collider, collider.cellMinX, collider.cellMinY, collider.cellMaxX, collider.cellMaxY);
+            }
+            size++;
+        }
+
+        void remove(Collider collider) {
+            if (collider.large) {
+                for (int i = 0; i < largeCount; i++) {
+                    if (large[i] == collider) {
+                        large[i] = large[--largeCount];
+                        large[largeCount] = null;
+                        break;
+                    }
+                }
+            } else if (collider.isStatic) {
+                statics.remove(collider);
+            } else {
+                hash.remove(collider, collider.cellMinX, collider.cellMinY, collider.cellMaxX, collider.cellMaxY);
+            }
+            size--;
+        }
+
+        /**
+         * Start walking the colliders that could overlap the area from (left, bottom) up to but not including (right, top):
+         * every large one, the static ones whose bounds reach into it, then the ones in the hash cells it covers,
+         * each of them once. An empty area only walks the large ones. Walks mark colliders with the stamp,
+         * so there's one at a time and only on the World's thread.
+         */
+        void begin(int left, int bottom, int right, int top, int stamp) {
+            walkLeft = left;
+            walkBottom = bottom;
+            walkRight = right;
+            walkTop = top;
+            walkStamp = stamp;
+            walkPhase = walk_large;
+            walkIndex = 0;
+        }
+
+        /**
+         * The next candidate of the walk, or null when there are no more
+         */
+        Collider next() {
+            if (walkPhase == walk_large) {
+                if (walkIndex < largeCount) {
+                    return large[walkIndex++];
+                }
+                if (walkRight <= walkLeft || walkTop <= walkBottom) {
+                    walkPhase = walk_done;
+                    return null;
+                }
+                walkPhase = walk_statics;
+                walkIndex = statics.next(statics.start(walkLeft), walkLeft, walkBottom, walkRight, walkTop);
+            }
+
+            if (walkPhase == walk_statics) {
+                if (walkIndex < statics.count) {
+                    Collider collider = statics.items[walkIndex];
+                    walkIndex = statics.next(walkIndex + 1, walkLeft, walkBottom, walkRight, walkTop);
+                    return collider;
+                }
+                walkPhase = walk_hash;
+                walkMinX = hash.cell(walkLeft);
+                walkMaxX = hash.cell(walkRight - 1);
+                walkMaxY = hash.cell(walkTop - 1);
+                walkCellX = walkMinX;
+                walkCellY = hash.cell(walkBottom);
+                walkCell = hash.get(walkCellX, walkCellY);
+                walkIndex = 0;
+            }
+
+            while (walkPhase == walk_hash) {
+                if (walkCell != null) {
+                    while (walkIndex < walkCell.size) {
+                        Collider collider = walkCell.items[walkIndex++];
+                        // colliders spanning several cells are only walked once
+                        if (collider.stamp == walkStamp) continue;
+                        collider.stamp = walkStamp;
+                        return collider;
+                    }
+                }
+                if (++walkCellX > walkMaxX) {
+                    walkCellX = walkMinX;
+                    if (++walkCellY > walkMaxY) {
+                        walkPhase = walk_done;
+                        walkCell = null;
+                        break;
+                    }
+                }
+                walkCell = hash.get(walkCellX, walkCellY);
+                walkIndex = 0;
+            }
+            return null;
+        }
+    }
+
+    private final World world;
+    private int cellSize;
+
+    // every collider, for checks that don't ask for any mask bits
+    private Bucket all;
+    // the colliders carrying each mask bit, created when the bit is first seen
+    private final Bucket[] bits;
+
+    private int stamp;
+    private Collider castHit;
+
+    // small ids for colliders, used to key contact pairs, ids of removed colliders
+    // are held back until the next contact step has reported their pairs as ended
+    private Collider[] byId;
+    private int ids;
+    private int[] freeIds;
+    private int freeCount;
+    private int[] releasedIds;
+    private int releasedCount;
+
+    private Contacts contacts;
+
+    // where the last collider passed to place() belongs
+    private boolean placeLarge;
+    private int placeMinX, placeMinY, placeMaxX, placeMaxY;
+
+    // per query mask
+    private final IntIntMap hits;
+    private final IntIntMap misses;
+
+    public Collisions(World world) {
+        this.world = world;
+        this.cellSize = default_cell_size;
+        this.all = new Bucket(cellSize);
+        this.bits = new Bucket[mask_bits];
+        this.hits = new IntIntMap();
+        this.misses = new IntIntMap();
+        this.byId = new Collider[64];
+        this.freeIds = new int[16];
+        this.releasedIds = new int[16];
+    }
+
+    /**
+     * The overlapping pairs found at the start of each World update, created the first time it's asked for
+     */
+    public Contacts contacts() {
+        if (contacts == null) {
+            contacts = new Contacts(this);
+        }
+        return contacts;
+    }
+
+    /**
+     * Catch up with anything that moved outside of a Mover, then find the contact pairs if anything is watching,
+     * called by the World at the start of its update
+     */
+    public void step() {
+        sync();
+        if (contacts != null && contacts.watches() > 0) {
+            contacts.step();
+        }
+        while (releasedCount > 0) {
+            if (freeCount == freeIds.length) {
+                freeIds = grow(freeIds);
+            }
+            freeIds[freeCount++] = releasedIds[--releasedCount];
+        }
+    }
+
+    public int cellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Change the size of the hash cells, which must be a power of two, and re-index everything
+     */
+    public void setCellSize(int cellSize) {
+        ComponentStore colliders = world.store(collider_type);
+        if (colliders != null) {
+            for (int i = 0; i < colliders.size(); i++) {
+                remove((Collider) colliders.get(i));
+            }
+        }
+        this.cellSize = cellSize;
+        all = new Bucket(cellSize);
+        for (int i = 0; i < mask_bits; i++) {
+            bits[i] = null;
+        }
+        if (colliders != null) {
+            for (int i = 0; i < colliders.size(); i++) {
+                add((Collider) colliders.get(i));
+            }
+        }
+    }
+
+    /**
+     * The number of colliders that carry the given mask bit
+     */
+    public int count(int bit) {
+        assert(Integer.bitCount(bit) == 1) : "Count is per mask bit";
+        Bucket bucket = bits[Integer.numberOfTrailingZeros(bit)];
+        return (bucket != null) ? bucket.size : 0;
+    }
+
+    /**
+     * The number of checks for exactly this mask that found something since the last {@link #resetStats()}
+     */
+    public int hits(int mask) {
+        return hits.get(mask, 0);
+    }
+
+    /**
+     * The number of checks for exactly this mask that found nothing since the last {@link #resetStats()}
+     */
+    public int misses(int mask) {
+        return misses.get(mask, 0);
+    }
+
+    public void resetStats() {
+        hits.clear();
+        misses.clear();
+    }
+
+    void add(Collider collider) {
+        if (collider.indexed) return;
+        collider.indexed = true;
+        collider.id = (freeCount > 0) ? freeIds[--freeCount] : ids++;
+        if (collider.id == byId.length) {
+            Collider[] resized = new Collider[byId.length * 2];
+            System.arraycopy(byId, 0, resized, 0, byId.length);
+            byId = resized;
+        }
+        byId[collider.id] = collider;
+        collider.contactFrame = -1;
+        place(collider);
+        apply(collider);
+        insert(collider);
+    }
+
+    void remove(Collider collider) {
+        if (!collider.indexed) return;
+        erase(collider);
+        collider.indexed = false;
+        if (releasedCount == releasedIds.length) {
+            releasedIds = grow(releasedIds);
+        }
+        releasedIds[releasedCount++] = collider.id;
+    }
+
+    Collider byId(int id) {
+        return byId[id];
+    }
+
+    /**
+     * Bring a collider's cells and buckets up to date with its current bounds and mask
+     */
+    void update(Collider collider) {
+        if (!collider.indexed) return;
+
+        place(collider);
+        boolean unchanged = !collider.isStatic
+                && (collider.mask == collider.indexedMask) && (placeLarge == collider.large)
+                && (placeLarge || (placeMinX == collider.cellMinX && placeMinY == collider.cellMinY
+                                && placeMaxX == collider.cellMaxX && placeMaxY == collider.cellMaxY));
+        if (unchanged) return;
+
+        erase(collider);
+        apply(collider);
+        insert(collider);
+    }
+
+    void setStatic(Collider collider, boolean value) {
+        if (collider.indexed) {
+            erase(collider);
+            collider.isStatic = value;
+            place(collider);
+            apply(collider);
+            insert(collider);
+        } else {
+            collider.isStatic = value;
+        }
+    }
+
+    /**
+     * Re-index every non-static collider whose bounds or mask changed since it was last indexed,
+     * and sort the static colliders if any of them changed
+     */
+    public void sync() {
+        ComponentStore colliders = world.store(collider_type);
+        if (colliders == null) return;
+        for (int i = 0; i < colliders.size(); i++) {
+            Collider collider = (Collider) colliders.get(i);
+            if (!collider.isStatic) {
+                update(collider);
+            }
+        }
+        all.statics.sort();
+        for (Bucket bucket : bits) {
+            if (bucket != null) {
+                bucket.statics.sort();
+            }
+        }
+    }
+
+    /**
+     * The number of times the static colliders carrying the given mask bit have been sorted
+     */
+    public int staticRebuilds(int bit) {
+        assert(Integer.bitCount(bit) == 1) : "Rebuilds are per mask bit";
+        Bucket bucket = bits[Integer.numberOfTrailingZeros(bit)];
+        return (bucket != null) ? bucket.statics.rebuilds : 0;
+    }
+
+    /**
+     * Whether the collider, moved by (dx, dy), overlaps any other collider that has all the bits in mask
+     */
+    public boolean check(Collider collider, int mask, int dx, int dy) {
+        Collider found = null;
+
+        Bucket bucket = smallest(mask);
+        if (bucket != null) {
+            found = find(bucket, collider, mask, dx, dy);
+        }
+
+        if (found != null) hits.getAndIncrement(mask, 0, 1);
+        else               misses.getAndIncrement(mask, 0, 1);
+        return found != null;
+    }
+
+    /**
+     * How many pixels the collider can move in the direction (dirX, dirY), up to distance,
+     * before it would overlap a collider that has all the bits in mask.
+     * The direction is along one axis, so one of dirX and dirY is 0 and the other is 1 or -1.
+     * The collider that stopped it is available from {@link #castHit()} until the next cast.
+     */
+    public int cast(Collider collider, int mask, int dirX, int dirY, int distance) {
+        assert((dirX == 0) != (dirY == 0) && Math.abs(dirX + dirY) == 1) : "Cast direction must be a unit step along one axis";
+        castHit = null;
+        if (distance <= 0) {
+            return 0;
+        }
+
+        Bucket bucket = smallest(mask);
+        if (bucket == null) {
+            return distance;
+        }
+
+        // only rects can be swept in one go, anything else steps a pixel at a time
+        if (collider.shape() != Collider.Shape.rect) {
+            for (int step = 1; step <= distance; step++) {
+                castHit = find(bucket, collider, mask, dirX * step, dirY * step);
+                if (castHit != null) {
+                    return step - 1;
+                }
+            }
+            return distance;
+        }
+
+        int free = distance;
+
+        // everything that could be in the way of the whole sweep
+        int left   = collider.left()   + Math.min(0, dirX * distance);
+        int bottom = collider.bottom() + Math.min(0, dirY * distance);
+        int right  = collider.right()  + Math.max(0, dirX * distance);
+        int top    = collider.top()    + Math.max(0, dirY * distance);
+        bucket.begin(left, bottom, right, top, ++stamp);
+        for (Collider other = bucket.next(); other != null; other = bucket.next()) {
+            if (other != collider && (other.mask & mask) == mask) {
+                int until = collider.sweep(other, dirX, dirY, free);
+                if (until < free) {
+                    free = until;
+                    castHit = other;
+                    if (free == 0) return 0;
+                }
+            }
+        }
+
+        return free;
+    }
+
+    /**
+     * The collider that stopped the last {@link #cast}, or null if it got all the way
+     */
+    public Collider castHit() {
+        return castHit;
+    }
+
+    /**
+     * The first collider with all the bits in mask that overlaps a rectangle in world space, or null.
+     * For things that are too simple to be colliders of their own, like projectiles.
+     */
+    public Collider first(int x, int y, int w, int h, int mask) {
+        Bucket bucket = smallest(mask);
+        if (bucket == null) return null;
+
+        bucket.begin(x, y, x + w, y + h, ++stamp);
+        for (Collider other = bucket.next(); other != null; other = bucket.next()) {
+            if ((other.mask & mask) == mask && other.overlaps(x, y, w, h)) {
+                return other;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Trace the segment from (x0, y0) to (x1, y1) and find the first collider with all the bits in mask
+     * that it runs into, which is written to hit. Colliders that start right at the end of the segment don't count.
+     */
+    public boolean raycast(float x0, float y0, float x1, float y1, int mask, RayHit hit) {
+        return trace(x0, y0, x1, y1, mask, hit, false);
+    }
+
+    /**
+     * Whether nothing with all the bits in mask is in the way between (x0, y0) and (x1, y1)
+     */
+    public boolean lineOfSight(float x0, float y0, float x1, float y1, int mask, RayHit hit) {
+        return !trace(x0, y0, x1, y1, mask, hit, true);
+    }
+
+    /**
+     * Trace a batch of segments, each one four floats (x0, y0, x1, y1) in rays, into the matching entries of hits.
+     * Returns how many of them hit something.
+     *
+     * Tracing only reads the index, so once it's been synced, separate ranges of a batch can be traced
+     * on separate threads as long as nothing moves or changes until they're done.
+     */
+    public int raycast(float[] rays, int first, int count, int mask, RayHit[] hits) {
+        int hitCount = 0;
+        for (int i = first; i < first + count; i++) {
+            int ray = i * 4;
+            if (trace(rays[ray], rays[ray + 1], rays[ray + 2], rays[ray + 3], mask, hits[i], false)) {
+                hitCount++;
+            }
+        }
+        return hitCount;
+    }
+
+    // nearest hit along the segment, or any hit at all when that's all that's needed
+    private boolean trace(float x0, float y0, float x1, float y1, int mask, RayHit hit, boolean any) {
+        hit.reset();
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+
+        Bucket bucket = smallest(mask);
+        if (bucket != null) {
+            // the large ones, then the static ones by their bounds, like a Bucket walk
+            // but without its state, so batches can be traced on several threads
+            for (int i = 0; i < bucket.largeCount; i++) {
+                Collider other = bucket.large[i];
+                if ((other.mask & mask) == mask && other.raycast(x0, y0, dx, dy, hit) && any) {
+                    return finish(x0, y0, dx, dy, hit);
+                }
+            }
+
+            StaticIndex statics = bucket.statics;
+            int left   = (int) Math.floor(Math.min(x0, x1));
+            int bottom = (int) Math.floor(Math.min(y0, y1));
+            int right  = (int) Math.floor(Math.max(x0, x1)) + 1;
+            int top    = (int) Math.floor(Math.max(y0, y1)) + 1;
+            int at = statics.next(statics.start(left), left, bottom, right, top);
+            for (; at < statics.count; at = statics.next(at + 1, left, bottom, right, top)) {
+                Collider other = statics.items[at];
+                if ((other.mask & mask) == mask && other.raycast(x0, y0, dx, dy, hit) && any) {
+                    return finish(x0, y0, dx, dy, hit);
+                }
+            }
+
+            // the cells of the hash in the order the segment passes through them, until the next
+            // one starts further along than what's been hit so far; a collider in more than one
+            // of them is tested again rather than stamped, so tracing doesn't write to anything shared
+            SpatialHash hash = bucket.hash;
+            float size = hash.cellSize;
+            float px = x0 / size;
+            float py = y0 / size;
+            float vx = dx / size;
+            float vy = dy / size;
+            int cx = (int) Math.floor(px);
+            int cy = (int) Math.floor(py);
+            int stepX = (vx > 0) ? 1 : (vx < 0) ? -1 : 0;
+            int stepY = (vy > 0) ? 1 : (vy < 0) ? -1 : 0;
+            float nextX = (vx > 0) ? (cx + 1 - px) / vx : (vx < 0) ? (cx - px) / vx : Float.POSITIVE_INFINITY;
+            float nextY = (vy > 0) ? (cy + 1 - py) / vy : (vy < 0) ? (cy - py) / vy : Float.POSITIVE_INFINITY;
+            float deltaX = (vx != 0) ? Math.abs(1 / vx) : Float.POSITIVE_INFINITY;
+            float deltaY = (vy != 0) ? Math.abs(1 / vy) : Float.POSITIVE_INFINITY;
+            float t = 0;
+            while (t < hit.fraction) {
+                SpatialHash.Cell cell = hash.get(cx, cy);
+                if (cell != null) {
+                    for (int i = 0; i < cell.size; i++) {
+                        Collider other = cell.items[i];
+                        if ((other.mask & mask) == mask && other.raycast(x0, y0, dx, dy, hit) && any) {
+                            return finish(x0, y0, dx, dy, hit);
+                        }
+                    }
+                }
+                if (nextX < nextY) {
+                    t = nextX;
+                    cx += stepX;
+                    nextX += deltaX;
+                } else {
+                    t = nextY;
+                    cy += stepY;
+                    nextY += deltaY;
+                }
+            }
+        }
+
+        return finish(x0, y0, dx, dy, hit);
+    }
+
+    private static boolean finish(float x0, float y0, float dx, float dy, RayHit hit) {
+        hit.x = x0 + dx * hit.fraction;
+        hit.y = y0 + dy * hit.fraction;
+        return hit.collider != null;
+    }
+
+    private Collider find(Bucket bucket, Collider collider, int mask, int dx, int dy) {
+        // a collider without a shape has no area, so only the large ones are walked
+        if (collider.shape() == Collider.Shape.none) {
+            bucket.begin(0, 0, 0, 0, ++stamp);
+        } else {
+            bucket.begin(collider.left() + dx, collider.bottom() + dy, collider.right() + dx, collider.top() + dy, ++stamp);
+        }
+        for (Collider other = bucket.next(); other != null; other = bucket.next()) {
+            if (other != collider
+             && (other.mask & mask) == mask
+             && collider.overlaps(other, dx, dy)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Report every pair of a collider with all the bits in maskA overlapping one with all the bits in maskB,
+     * returns the number of colliders it looked for pairs around
+     */
+    int collect(Contacts contacts, int watch, int maskA, int maskB) {
+        Bucket bucket = smallest(maskB);
+        if (bucket == null) return 0;
+
+        int queried = 0;
+        ComponentStore colliders = world.store(collider_type);
+        for (int i = 0; i < colliders.size(); i++) {
+            Collider a = (Collider) colliders.get(i);
+            if ((a.mask & maskA) != maskA) continue;
+            if (collect(contacts, watch, a, bucket, maskB)) queried++;
+        }
+        return queried;
+    }
+
+    /**
+     * Report every pair of one of the first count watchers overlapping a collider with all the bits in maskB,
+     * returns the number of colliders it looked for pairs around
+     */
+    int collect(Contacts contacts, int watch, Collider[] watchers, int count, int maskB) {
+        Bucket bucket = smallest(maskB);
+        if (bucket == null) return 0;
+
+        int queried = 0;
+        for (int i = 0; i < count; i++) {
+            if (collect(contacts, watch, watchers[i], bucket, maskB)) queried++;
+        }
+        return queried;
+    }
+
+    private boolean collect(Contacts contacts, int watch, Collider a, Bucket bucket, int maskB) {
+        if (!a.indexed || a.shape() == Collider.Shape.none) return false;
+
+        bucket.begin(a.left(), a.bottom(), a.right(), a.top(), ++stamp);
+        for (Collider b = bucket.next(); b != null; b = bucket.next()) {
+            if (pairs(a, b, maskB)) {
+                contacts.add(watch, a, b);
+            }
+        }
+        return true;
+    }
+
+    private static boolean pairs(Collider a, Collider b, int maskB) {
+        // when both colliders fit both sides the pair is reported from each of them, so each one sees it as 'a'
+        return a != b && (b.mask & maskB) == maskB && a.overlaps(b, 0, 0);
+    }
+
+    // the bucket of the requested bit with the fewest colliders in it, or null if one of them has none
+    private Bucket smallest(int mask) {
+        if (mask == 0) {
+            return all;
+        }
+        Bucket smallest = null;
+        for (int remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            Bucket bucket = bits[Integer.numberOfTrailingZeros(remaining)];
+            if (bucket == null || bucket.size == 0) {
+                return null;
+            }
+            if (smallest == null || bucket.size < smallest.size) {
+                smallest = bucket;
+            }
+        }
+        return smallest;
+    }
+
+    // work out the cells a collider belongs in from its current bounds
+    private void place(Collider collider) {
+        if (collider.shape() == Collider.Shape.none) {
+            // nothing to find, keep it out of the hash
+            placeLarge = false;
+            placeMinX = placeMinY = 0;
+            placeMaxX = placeMaxY = -1;
+            return;
+        }
+
+        SpatialHash hash = all.hash;
+        placeMinX = hash.cell(collider.left());
+        placeMinY = hash.cell(collider.bottom());
+        placeMaxX = hash.cell(collider.right() - 1);
+        placeMaxY = hash.cell(collider.top() - 1);
+        // grids are placed by their bounds like rects, only ones that span too many cells go in the large list,
+        // static or not, since one very wide member would make every static query start from the beginning
+        placeLarge = (long) (placeMaxX - placeMinX + 1) * (placeMaxY - placeMinY + 1) > max_cells;
+        if (placeLarge) {
+            placeMinX = placeMinY = 0;
+            placeMaxX = placeMaxY = -1;
+        }
+    }
+
+    private void apply(Collider collider) {
+        collider.large = placeLarge;
+        collider.cellMinX = placeMinX;
+        collider.cellMinY = placeMinY;
+        collider.cellMaxX = placeMaxX;
+        collider.cellMaxY = placeMaxY;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] resized = new int[array.length * 2];
+        System.arraycopy(array, 0, resized, 0, array.length);
+        return resized;
+    }
+
+    private void insert(Collider collider) {
+        all.insert(collider);
+        collider.indexedMask = collider.mask;
+        for (int remaining = collider.mask; remaining != 0; remaining &= remaining - 1) {
+            int bit = Integer.numberOfTrailingZeros(remaining);
+            if (bits[bit] == null) {
+                bits[bit] = new Bucket(cellSize);
+            }
+            bits[bit].insert(collider);
+        }
+    }
+
+    private void erase(Collider collider) {
+        all.remove(collider);
+        for (int remaining = collider.indexedMask; remaining != 0; remaining &= remaining - 1) {
+            bits[Integer.numberOfTrailingZeros(remaining)].remove(collider);
+        }
+    }
+
+}
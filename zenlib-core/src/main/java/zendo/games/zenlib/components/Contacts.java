@@ -0,0 +1,359 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Every overlapping pair of colliders for the mask pairs that something has asked to watch,
+ * found once per World update instead of by each component doing its own checks.
+ *
+ * Each step publishes a begin, stay or end event per pair, comparing against the pairs from the
+ * step before. The events live in parallel arrays that are reused from step to step, so reading
+ * them doesn't allocate. The events for one collider on the 'a' side of a watch can be walked with
+ * {@link #first(Collider)} and {@link #next(int)}.
+ *
+ * The 'a' side of a watch is either every collider with some mask bits, or, for a watch made with
+ * {@link #watch(Collider, int)}, just the colliders that were added to it, so a handful of colliders
+ * that care about what they touch don't make each step query every collider in the World. When both colliders of a pair fit both sides of a
+ * watch, the pair is reported twice, once with each of them as 'a'. End events for destroyed colliders still refer
+ * to the destroyed instance, which the pool may since have handed out again.
+ */
+public class Contacts {
+
+    public static final int begin = 0;
+    public static final int stay  = 1;
+    public static final int end   = 2;
+
+    static final int max_watches = 127;
+
+    // key layout: watch index, a id, b id
+    private static final int id_bits = 28;
+    private static final int id_mask = (1 << id_bits) - 1;
+
+    private final Collisions collisions;
+
+    private int[] watchA;
+    private int[] watchB;
+    private int watches;
+
+    // the colliders on the 'a' side of the watches made for colliders, null for the ones made for a mask
+    private Collider[][] watchers;
+    private int[] watcherCounts;
+
+    // sorted pair keys from the last step and the one being built
+    private long[] previous;
+    private int previousCount;
+    private long[] current;
+    private int currentCount;
+
+    private int[] types;
+    private Collider[] as;
+    private Collider[] bs;
+    private int[] watchOf;
+    private int[] next;
+    private int count;
+
+    private int frame;
+    private int begins;
+    private int ends;
+    private long nanos;
+    private int queries;
+
+    Contacts(Collisions collisions) {
+        this.collisions = collisions;
+        this.watchA = new int[8];
+        this.watchB = new int[8];
+        this.watchers = new Collider[8][];
+        this.watcherCounts = new int[8];
+        this.previous = new long[64];
+        this.current = new long[64];
+        this.types = new int[64];
+        this.as = new Collider[64];
+        this.bs = new Collider[64];
+        this.watchOf = new int[64];
+        this.next = new int[64];
+    }
+
+    /**
+     * Start finding the pairs of a collider with all the bits in maskA and one with all the bits in maskB,
+     * returns the index of the watch, which is the same every time for the same masks
+     */
+    public int watch(int maskA, int maskB) {
+        for (int i = 0; i < watches; i++) {
+            if (watchers[i] == null && watchA[i] == maskA && watchB[i] == maskB) {
+                return i;
+            }
+        }
+        return add(maskA, maskB, null);
+    }
+
+    /**
+     * Start finding the pairs of this collider with one that has all the bits in maskB, returns the index of the watch,
+     * which is shared by every collider watching for the same maskB. A destroyed collider stops watching by itself.
+     */
+    public int watch(Collider collider, int maskB) {
+        int watch = -1;
+        for (int i = 0; i < watches; i++) {
+            if (watchers[i] != null && watchB[i] == maskB) {
+                watch = i;
+                break;
+            }
+        }
+        if (watch < 0) {
+            watch = add(0, maskB, new Collider[4]);
+        }
+
+        Collider[] list = watchers[watch];
+        int size = watcherCounts[watch];
+        for (int i = 0; i < size; i++) {
+            if (list[i] == collider) return watch;
+        }
+        if (size == list.length) {
+            Collider[] resized = new Collider[size * 2];
+            System.arraycopy(list, 0, resized, 0, size);
+            watchers[watch] = list = resized;
+        }
+        list[size] = collider;
+        watcherCounts[watch] = size + 1;
+        collider.watching++;
+        return watch;
+    }
+
+    /**
+     * Stop finding the pairs of a collider added with {@link #watch(Collider, int)}
+     */
+    public void unwatch(Collider collider, int watch) {
+        Collider[] list = watchers[watch];
+        if (list == null) return;
+        int size = watcherCounts[watch];
+        for (int i = 0; i < size; i++) {
+            if (list[i] == collider) {
+                list[i] = list[--size];
+                list[size] = null;
+                watcherCounts[watch] = size;
+                collider.watching--;
+                return;
+            }
+        }
+    }
+
+    // take a destroyed collider out of every watch it was added to
+    void forget(Collider collider) {
+        for (int i = 0; i < watches && collider.watching > 0; i++) {
+            unwatch(collider, i);
+        }
+    }
+
+    private int add(int maskA, int maskB, Collider[] list) {
+        assert(watches < max_watches) : "Too many contact watches";
+        if (watches == watchA.length) {
+            watchA = grow(watchA);
+            watchB = grow(watchB);
+            watcherCounts = grow(watcherCounts);
+            Collider[][] resized = new Collider[watches * 2][];
+            System.arraycopy(watchers, 0, resized, 0, watches);
+            watchers = resized;
+        }
+        watchA[watches] = maskA;
+        watchB[watches] = maskB;
+        watchers[watches] = list;
+        return watches++;
+    }
+
+    public int watches() {
+        return watches;
+    }
+
+    /**
+     * The number of events published by the last step
+     */
+    public int count() {
+        return count;
+    }
+
+    public int type(int event) {
+        return types[event];
+    }
+
+    public Collider a(int event) {
+        return as[event];
+    }
+
+    public Collider b(int event) {
+        return bs[event];
+    }
+
+    public int watchOf(int event) {
+        return watchOf[event];
+    }
+
+    /**
+     * The first begin or stay event from the last step with this collider on the 'a' side, or -1
+     */
+    public int first(Collider collider) {
+        return (collider.contactFrame == frame) ? collider.contactFirst : -1;
+    }
+
+    /**
+     * The next begin or stay event with the same collider on the 'a' side, or -1
+     */
+    public int next(int event) {
+        return next[event];
+    }
+
+    // the number of pairs overlapping as of the last step
+    public int pairs() {
+        return currentCount;
+    }
+
+    public int begins() {
+        return begins;
+    }
+
+    public int ends() {
+        return ends;
+    }
+
+    // how long the last step took
+    public long nanos() {
+        return nanos;
+    }
+
+    // the number of 'a' side colliders the last step looked for pairs around
+    public int queries() {
+        return queries;
+    }
+
+    void step() {
+        long start = TimeUtils.nanoTime();
+        frame++;
+
+        long[] swap = previous;
+        previous = current;
+        previousCount = currentCount;
+        current = swap;
+        currentCount = 0;
+
+        queries = 0;
+        for (int i = 0; i < watches; i++) {
+            if (watchers[i] != null) {
+                queries += collisions.collect(this, i, watchers[i], watcherCounts[i], watchB[i]);
+            } else {
+                queries += collisions.collect(this, i, watchA[i], watchB[i]);
+            }
+        }
+        sort(current, 0, currentCount - 1);
+        publish();
+
+        nanos = TimeUtils.nanoTime() - start;
+    }
+
+    void add(int watch, Collider a, Collider b) {
+        assert(a.id <= id_mask && b.id <= id_mask) : "Too many colliders for contact keys";
+        if (currentCount == current.length) {
+            current = grow(current);
+        }
+        current[currentCount++] = ((long) watch << (2 * id_bits)) | ((long) a.id << id_bits) | b.id;
+    }
+
+    // walk both sorted key lists together: only in the new one is a begin, in both a stay, only in the old one an end
+    private void publish() {
+        count = 0;
+        begins = 0;
+        ends = 0;
+        int i = 0;
+        int j = 0;
+        while (i < previousCount || j < currentCount) {
+            if (j == currentCount || (i < previousCount && previous[i] < current[j])) {
+                event(end, previous[i++]);
+                ends++;
+            } else if (i == previousCount || current[j] < previous[i]) {
+                event(begin, current[j++]);
+                begins++;
+            } else {
+                event(stay, current[j++]);
+                i++;
+            }
+        }
+    }
+
+    private void event(int type, long key) {
+        if (count == types.length) {
+            int capacity = types.length * 2;
+            types = grow(types);
+            watchOf = grow(watchOf);
+            next = grow(next);
+            Collider[] resized = new Collider[capacity];
+            System.arraycopy(as, 0, resized, 0, count);
+            as = resized;
+            resized = new Collider[capacity];
+            System.arraycopy(bs, 0, resized, 0, count);
+            bs = resized;
+        }
+
+        Collider a = collisions.byId((int) (key >>> id_bits) & id_mask);
+        Collider b = collisions.byId((int) key & id_mask);
+        types[count] = type;
+        as[count] = a;
+        bs[count] = b;
+        watchOf[count] = (int) (key >>> (2 * id_bits));
+        next[count] = -1;
+
+        // link it into a's list for this step
+        if (type != end) {
+            next[count] = (a.contactFrame == frame) ? a.contactFirst : -1;
+            a.contactFirst = count;
+            a.contactFrame = frame;
+        }
+        count++;
+    }
+
+    // in place, so stepping doesn't allocate the way a merge sort's buffer would
+    private static void sort(long[] keys, int lo, int hi) {
+        while (hi - lo > 16) {
+            long pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    long swap = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller half, loop on the bigger one
+            if (j - lo < hi - i) {
+                sort(keys, lo, j);
+                lo = i;
+            } else {
+                sort(keys, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            long key = keys[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            keys[j + 1] = key;
+        }
+    }
+
+    private static int[] grow(int[] array) {
+        int[] resized = new int[array.length * 2];
+        System.arraycopy(array, 0, resized, 0, array.length);
+        return resized;
+    }
+
+    private static long[] grow(long[] array) {
+        long[] resized = new long[array.length * 2];
+        System.arraycopy(array, 0, resized, 0, array.length);
+        return resized;
+    }
+
+}
@@ -15,6 +15,11 @@ public class Hurtable extends Component {
     public float stunTimer;
     public float flickerTimer;
 
+    // the contact watch the collider was added to, and the collider and hurtBy it was added for
+    private int watch;
+    private Collider watchedCollider;
+    private int watchedHurtBy;
+
     public Hurtable() {
         reset();
     }
@@ -27,6 +32,9 @@ public class Hurtable extends Component {
         hurtBy = 0;
         stunTimer = 0;
         flickerTimer = 0;
+        watch = -1;
+        watchedCollider = null;
+        watchedHurtBy = 0;
     }
 
     @Override
@@ -42,10 +50,45 @@ public class Hurtable extends Component {
         }
     }
 
+    @Override
+    public void awake() {
+        register();
+    }
+
+    @Override
+    public void destroyed() {
+        unregister();
+    }
+
+    /**
+     * Set the collider that gets hurt and start watching it right away, so its contacts are there on the next update;
+     * assigning collider directly only starts the watch at this component's next update, which misses that frame
+     */
+    public void setCollider(Collider collider) {
+        this.collider = collider;
+        if (world() != null) {
+            register();
+        }
+    }
+
+    /**
+     * Set what hurts this and start watching for it right away, the same way as {@link #setCollider(Collider)}
+     */
+    public void setHurtBy(int hurtBy) {
+        this.hurtBy = hurtBy;
+        if (world() != null) {
+            register();
+        }
+    }
+
     @Override
     public void update(float dt) {
+        if (watchedCollider != collider || watchedHurtBy != hurtBy) {
+            register();
+        }
+
         if (collider != null && onHurt != null && stunTimer <= 0) {
-            if (collider.check(hurtBy)) {
+            if (touching()) {
                 Time.pause_for(0.1f);
                 stunTimer = 0.5f;
                 flickerTimer = 0.5f;
@@ -67,4 +110,35 @@ public class Hurtable extends Component {
         }
     }
 
+    // only the collider is on the 'a' side of the watch, so the contacts step looks around it and nothing else,
+    // the watch itself is shared by every Hurtable hurt by the same thing
+    private void register() {
+        unregister();
+        watchedCollider = collider;
+        watchedHurtBy = hurtBy;
+        if (collider == null || hurtBy == 0) return;
+        watch = world().collisions().contacts().watch(collider, hurtBy);
+    }
+
+    private void unregister() {
+        if (watch >= 0) {
+            world().collisions().contacts().unwatch(watchedCollider, watch);
+        }
+        watch = -1;
+        watchedCollider = null;
+        watchedHurtBy = 0;
+    }
+
+    // whether the contact pairs found at the start of this update have the collider touching something that hurts
+    private boolean touching() {
+        if (watch < 0) return false;
+        Contacts contacts = world().collisions().contacts();
+        for (int event = contacts.first(collider); event >= 0; event = contacts.next(event)) {
+            if (contacts.watchOf(event) == watch) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
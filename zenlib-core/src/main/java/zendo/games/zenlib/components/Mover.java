@@ -4,7 +4,6 @@ import com.badlogic.gdx.math.Vector2;
 import zendo.games.zenlib.ecs.Component;
 import zendo.games.zenlib.ecs.Mask;
 import zendo.games.zenlib.utils.Calc;
-import zendo.games.zenlib.utils.Point;
 
 public class Mover extends Component {
 
@@ -49,7 +48,7 @@ public class Mover extends Component {
         if (other instanceof Mover) {
             Mover mover = (Mover) other;
             this.remainder.set(mover.remainder);
-            this.speed.set(mover.remainder);
+            this.speed.set(mover.speed);
             this.collider = mover.collider;
             this.onHitX   = mover.onHitX;
             this.onHitY   = mover.onHitY;
@@ -66,7 +65,7 @@ public class Mover extends Component {
         }
 
         // apply gravity
-        if (gravity != 0 && (collider == null || !collider.check(Mask.solid, Point.at(0, -1)))) {
+        if (gravity != 0 && (collider == null || !collider.check(Mask.solid, 0, -1))) {
             speed.y += gravity * dt;
         }
 
@@ -89,20 +88,22 @@ public class Mover extends Component {
 
     public boolean moveX(int amount) {
         if (collider != null) {
+            if (amount == 0) return false;
             int sign = Calc.sign(amount);
-
-            while (amount != 0) {
-                if (collider.check(Mask.solid, Point.at(sign, 0))) {
-                    if (onHitX != null) {
-                        onHitX.hit(this);
-                    } else {
-                        stopX();
-                    }
-                    return true;
+            int distance = Math.abs(amount);
+
+            // go as far as we can in one go
+            int free = collider.cast(Mask.solid, sign, 0, distance);
+            entity().position.x += sign * free;
+            collider.moved();
+
+            if (free < distance) {
+                if (onHitX != null) {
+                    onHitX.hit(this);
+                } else {
+                    stopX();
                 }
-
-                amount -= sign;
-                entity().position.x += sign;
+                return true;
             }
         } else {
             entity().position.x += amount;
@@ -113,20 +114,29 @@ public class Mover extends Component {
 
     public boolean moveY(int amount) {
         if (collider != null) {
+            if (amount == 0) return false;
             int sign = Calc.sign(amount);
+            int remaining = Math.abs(amount);
+
+            while (remaining > 0) {
+                // moving down through a jumpthrough we're already overlapping, it can't stop us
+                // until we're out of it again, so take that part a pixel at a time
+                boolean in_jumpthrough = (sign < 0 && collider.check(Mask.jumpthrough, 0, 0));
+                int distance = in_jumpthrough ? 1 : remaining;
 
-            while (amount != 0) {
-                boolean hit_something = collider.check(Mask.solid, Point.at(0, sign));
+                int free = collider.cast(Mask.solid, 0, sign, distance);
 
                 // no solid, but moving down, check for jumpthrough
-                // but only if not already overlapping a jumpthrough
-                if (!hit_something && sign < 0) {
-                    hit_something = (collider.check(Mask.jumpthrough, Point.at(0, sign))
-                                 && !collider.check(Mask.jumpthrough, Point.at(0, 0)));
+                if (sign < 0 && !in_jumpthrough) {
+                    free = collider.cast(Mask.jumpthrough, 0, sign, free);
                 }
 
+                remaining -= free;
+                entity().position.y += sign * free;
+
                 // stop movement
-                if (hit_something) {
+                if (free < distance) {
+                    collider.moved();
                     if (onHitY != null) {
                         onHitY.hit(this);
                     } else {
@@ -134,10 +144,8 @@ public class Mover extends Component {
                     }
                     return true;
                 }
-
-                amount -= sign;
-                entity().position.y += sign;
             }
+            collider.moved();
         } else {
             entity().position.y += amount;
         }
@@ -169,9 +177,9 @@ public class Mover extends Component {
             return false;
         }
 
-        boolean hit_solid = collider.check(Mask.solid, Point.at(0, dist));
-        boolean hit_jumpthrough = (collider.check(Mask.jumpthrough, Point.at(0, dist))
-                               && !collider.check(Mask.jumpthrough, Point.at(0, 0)));
+        boolean hit_solid = collider.check(Mask.solid, 0, dist);
+        boolean hit_jumpthrough = (collider.check(Mask.jumpthrough, 0, dist)
+                               && !collider.check(Mask.jumpthrough, 0, 0));
 
         return hit_solid || hit_jumpthrough;
     }
@@ -0,0 +1,275 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.ecs.Mask;
+
+import java.util.Arrays;
+
+/**
+ * A batch of simple projectiles that all share a hitbox size, a mask to stop at and a sprite.
+ *
+ * Each projectile is a handful of entries in primitive arrays rather than an entity with a
+ * Mover and a Collider, and the whole batch is moved in one loop per update. A projectile moves
+ * in pixels with a sub-pixel remainder like a Mover, along x and then along y, but instead of
+ * testing every pixel it tests steps as long as its hitbox is along that axis, which can't pass
+ * through anything, and only goes pixel by pixel within the step where it hits something so that
+ * it stops touching it. A projectile that hits something or runs out of lifetime is removed,
+ * the hits are listed in a buffer that's valid until the next update.
+ *
+ * Projectiles are positioned in world space, the entity's position isn't used.
+ */
+public class Projectiles extends Component {
+
+    private static final int initial_capacity = 64;
+
+    public int width;
+    public int height;
+    public int mask;
+    public float lifetime;
+    public TextureRegion region;
+
+    // per projectile
+    private int[] x;
+    private int[] y;
+    private float[] speedX;
+    private float[] speedY;
+    private float[] remainderX;
+    private float[] remainderY;
+    private float[] age;
+    private int[] tags;
+    private int count;
+
+    // what was hit during the last update
+    private int[] hitX;
+    private int[] hitY;
+    private int[] hitTags;
+    private Collider[] hitColliders;
+    private int hits;
+
+    public Projectiles() {
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if (x == null) {
+            x = new int[initial_capacity];
+            y = new int[initial_capacity];
+            speedX = new float[initial_capacity];
+            speedY = new float[initial_capacity];
+            remainderX = new float[initial_capacity];
+            remainderY = new float[initial_capacity];
+            age = new float[initial_capacity];
+            tags = new int[initial_capacity];
+            hitX = new int[initial_capacity];
+            hitY = new int[initial_capacity];
+            hitTags = new int[initial_capacity];
+            hitColliders = new Collider[initial_capacity];
+        }
+        width = 1;
+        height = 1;
+        mask = Mask.solid;
+        lifetime = 0;
+        region = null;
+        count = 0;
+        clearHits();
+    }
+
+    @Override
+    public <T extends Component> void copyFrom(T other) {
+        super.copyFrom(other);
+        if (other instanceof Projectiles) {
+            Projectiles projectiles = (Projectiles) other;
+            this.width    = projectiles.width;
+            this.height   = projectiles.height;
+            this.mask     = projectiles.mask;
+            this.lifetime = projectiles.lifetime;
+            this.region   = projectiles.region;
+        }
+    }
+
+    /**
+     * Fire a projectile from a world position, speed is in pixels per second, the tag is handed back with its hit
+     */
+    public void spawn(int x, int y, float speedX, float speedY, int tag) {
+        if (count == this.x.length) {
+            grow(count * 2);
+        }
+        this.x[count] = x;
+        this.y[count] = y;
+        this.speedX[count] = speedX;
+        this.speedY[count] = speedY;
+        this.remainderX[count] = 0;
+        this.remainderY[count] = 0;
+        this.age[count] = 0;
+        this.tags[count] = tag;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int x(int index) {
+        return x[index];
+    }
+
+    public int y(int index) {
+        return y[index];
+    }
+
+    public int tag(int index) {
+        return tags[index];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * The number of projectiles that hit something during the last update
+     */
+    public int hits() {
+        return hits;
+    }
+
+    public int hitX(int hit) {
+        return hitX[hit];
+    }
+
+    public int hitY(int hit) {
+        return hitY[hit];
+    }
+
+    public int hitTag(int hit) {
+        return hitTags[hit];
+    }
+
+    public Collider hitCollider(int hit) {
+        return hitColliders[hit];
+    }
+
+    @Override
+    public void update(float dt) {
+        clearHits();
+        Collisions collisions = world().collisions();
+
+        int i = 0;
+        while (i < count) {
+            // age out
+            if (lifetime > 0) {
+                age[i] += dt;
+                if (age[i] >= lifetime) {
+                    remove(i);
+                    continue;
+                }
+            }
+
+            // get the amount to move, including remainder from previous frame
+            float totalX = remainderX[i] + speedX[i] * dt;
+            float totalY = remainderY[i] + speedY[i] * dt;
+            int toMoveX = (int) totalX;
+            int toMoveY = (int) totalY;
+            remainderX[i] = totalX - toMoveX;
+            remainderY[i] = totalY - toMoveY;
+            if (toMoveX == 0 && toMoveY == 0) {
+                i++;
+                continue;
+            }
+
+            // one axis at a time like a Mover, a diagonal step could cut past the corner of something
+            Collider hit = move(collisions, i, Integer.signum(toMoveX), 0, Math.abs(toMoveX));
+            if (hit == null) {
+                hit = move(collisions, i, 0, Integer.signum(toMoveY), Math.abs(toMoveY));
+            }
+
+            if (hit != null) {
+                addHit(x[i], y[i], tags[i], hit);
+                remove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    @Override
+    public void render(SpriteBatch batch) {
+        if (region == null) return;
+        for (int i = 0; i < count; i++) {
+            batch.draw(region, x[i], y[i]);
+        }
+    }
+
+    // move a projectile up to distance pixels in the direction (dirX, dirY), along one axis, returns what stopped it
+    // at the last position that was free, or null; steps along the axis as long as the hitbox can't skip over anything
+    private Collider move(Collisions collisions, int index, int dirX, int dirY, int distance) {
+        int stride = Math.max(1, (dirX != 0) ? width : height);
+        int free = 0;
+        while (free < distance) {
+            int next = Math.min(free + stride, distance);
+            if (collisions.first(x[index] + dirX * next, y[index] + dirY * next, width, height, mask) != null) {
+                // it's somewhere in this step, find the first pixel that touches it
+                for (int step = free + 1; step <= next; step++) {
+                    Collider hit = collisions.first(x[index] + dirX * step, y[index] + dirY * step, width, height, mask);
+                    if (hit != null) {
+                        x[index] += dirX * (step - 1);
+                        y[index] += dirY * (step - 1);
+                        return hit;
+                    }
+                }
+            }
+            free = next;
+        }
+        x[index] += dirX * distance;
+        y[index] += dirY * distance;
+        return null;
+    }
+
+    // swap the last projectile into the hole
+    private void remove(int index) {
+        int last = --count;
+        x[index] = x[last];
+        y[index] = y[last];
+        speedX[index] = speedX[last];
+        speedY[index] = speedY[last];
+        remainderX[index] = remainderX[last];
+        remainderY[index] = remainderY[last];
+        age[index] = age[last];
+        tags[index] = tags[last];
+    }
+
+    private void addHit(int x, int y, int tag, Collider collider) {
+        if (hits == hitX.length) {
+            int capacity = hits * 2;
+            hitX = Arrays.copyOf(hitX, capacity);
+            hitY = Arrays.copyOf(hitY, capacity);
+            hitTags = Arrays.copyOf(hitTags, capacity);
+            hitColliders = Arrays.copyOf(hitColliders, capacity);
+        }
+        hitX[hits] = x;
+        hitY[hits] = y;
+        hitTags[hits] = tag;
+        hitColliders[hits] = collider;
+        hits++;
+    }
+
+    private void clearHits() {
+        Arrays.fill(hitColliders, 0, hits, null);
+        hits = 0;
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        speedX = Arrays.copyOf(speedX, capacity);
+        speedY = Arrays.copyOf(speedY, capacity);
+        remainderX = Arrays.copyOf(remainderX, capacity);
+        remainderY = Arrays.copyOf(remainderY, capacity);
+        age = Arrays.copyOf(age, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+    }
+
+}
@@ -0,0 +1,46 @@
+package zendo.games.zenlib.components;
+
+/**
+ * Where a ray or segment traced with {@link Collisions#raycast} first ran into a collider.
+ * Meant to be kept and passed to every trace, each one overwrites it.
+ */
+public class RayHit {
+
+    // what was hit, or null if the segment got all the way to its end
+    public Collider collider;
+
+    // how far along the segment, from 0 at its start to 1 at its end
+    public float fraction;
+
+    // the point in world space
+    public float x;
+    public float y;
+
+    // the side that was hit, (0, 0) when the segment started inside the collider
+    public int normalX;
+    public int normalY;
+
+    // the cell that was hit when the collider is a Grid, otherwise -1
+    public int cellX;
+    public int cellY;
+
+    public RayHit() {
+        reset();
+    }
+
+    public boolean hit() {
+        return collider != null;
+    }
+
+    public void reset() {
+        collider = null;
+        fraction = 1;
+        x = 0;
+        y = 0;
+        normalX = 0;
+        normalY = 0;
+        cellX = -1;
+        cellY = -1;
+    }
+
+}
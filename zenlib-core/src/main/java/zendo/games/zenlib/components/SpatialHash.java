@@ -0,0 +1,90 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * A uniform grid of buckets over world space, only the buckets that have been touched exist.
+ * Colliders are added to every cell their bounds overlap, cell coordinates are inclusive.
+ */
+class SpatialHash {
+
+    static class Cell {
+        Collider[] items = new Collider[8];
+        int size;
+
+        void add(Collider collider) {
+            if (size == items.length) {
+                Collider[] resized = new Collider[items.length * 2];
+                System.arraycopy(items, 0, resized, 0, size);
+                items = resized;
+            }
+            items[size++] = collider;
+        }
+
+        void remove(Collider collider) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == collider) {
+                    items[i] = items[--size];
+                    items[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    final int cellSize;
+    final int shift;
+
+    private final IntMap<Cell> cells;
+
+    SpatialHash(int cellSize) {
+        assert(cellSize > 0 && (cellSize & (cellSize - 1)) == 0) : "Cell size must be a power of two";
+        this.cellSize = cellSize;
+        this.shift = Integer.numberOfTrailingZeros(cellSize);
+        this.cells = new IntMap<>();
+    }
+
+    // world coordinate to cell coordinate, rounding towards negative infinity
+    int cell(int coordinate) {
+        return coordinate >> shift;
+    }
+
+    Cell get(int cx, int cy) {
+        return cells.get(key(cx, cy));
+    }
+
+    void insert(Collider collider, int minX, int minY, int maxX, int maxY) {
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                int key = key(cx, cy);
+                Cell cell = cells.get(key);
+                if (cell == null) {
+                    cell = new Cell();
+                    cells.put(key, cell);
+                }
+                cell.add(collider);
+            }
+        }
+    }
+
+    void remove(Collider collider, int minX, int minY, int maxX, int maxY) {
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                Cell cell = cells.get(key(cx, cy));
+                if (cell != null) {
+                    cell.remove(collider);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        cells.clear();
+    }
+
+    // 16 bits per axis, cells further out than that alias, which only costs extra candidates
+    private static int key(int cx, int cy) {
+        return (cy << 16) | (cx & 0xFFFF);
+    }
+
+}
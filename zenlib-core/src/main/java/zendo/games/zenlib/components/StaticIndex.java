@@ -0,0 +1,126 @@
+package zendo.games.zenlib.components;
+
+import java.util.Arrays;
+
+/**
+ * Colliders that don't move, as a sort-and-sweep array: their bounds sorted by left edge
+ * in parallel int arrays, so a query is a binary search followed by a short linear scan
+ * that only touches a Collider once its bounds are known to overlap.
+ *
+ * Adding, removing or moving a member only marks the index dirty,
+ * it's sorted again the next time it's queried.
+ */
+class StaticIndex {
+
+    Collider[] items;
+    int[] minX;
+    int[] minY;
+    int[] maxX;
+    int[] maxY;
+    int count;
+
+    private int widest;
+    private boolean dirty;
+    private long[] order;
+
+    int rebuilds;
+
+    StaticIndex() {
+        items = new Collider[16];
+        minX = new int[16];
+        minY = new int[16];
+        maxX = new int[16];
+        maxY = new int[16];
+    }
+
+    void add(Collider collider) {
+        if (count == items.length) {
+            int capacity = items.length * 2;
+            items = Arrays.copyOf(items, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+        items[count++] = collider;
+        dirty = true;
+    }
+
+    void remove(Collider collider) {
+        for (int i = 0; i < count; i++) {
+            if (items[i] == collider) {
+                items[i] = items[--count];
+                items[count] = null;
+                dirty = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * The first entry that could overlap something whose left edge is at x, sorting first if anything changed
+     */
+    int start(int x) {
+        sort();
+        // nothing that starts further left than the widest member could reach x
+        int target = x - widest;
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (minX[mid] < target) lo = mid + 1;
+            else                    hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * The first entry from i on whose bounds overlap the area, or count if there are no more,
+     * a walk over the area starts from {@link #start(int)} of its left edge
+     */
+    int next(int i, int left, int bottom, int right, int top) {
+        for (; i < count && minX[i] < right; i++) {
+            if (overlaps(i, left, bottom, right, top)) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+    void sort() {
+        if (dirty) {
+            rebuild();
+        }
+    }
+
+    boolean overlaps(int i, int left, int bottom, int right, int top) {
+        return maxX[i] > left && minY[i] < top && maxY[i] > bottom;
+    }
+
+    private void rebuild() {
+        // sort by left edge, carrying the index along in the low bits
+        if (order == null || order.length < count) {
+            order = new long[items.length];
+        }
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) items[i].left() << 32) | i;
+        }
+        Arrays.sort(order, 0, count);
+
+        Collider[] sorted = new Collider[items.length];
+        widest = 0;
+        for (int i = 0; i < count; i++) {
+            Collider collider = items[(int) order[i]];
+            sorted[i] = collider;
+            minX[i] = collider.left();
+            minY[i] = collider.bottom();
+            maxX[i] = collider.right();
+            maxY[i] = collider.top();
+            widest = Math.max(widest, maxX[i] - minX[i]);
+        }
+        items = sorted;
+        dirty = false;
+        rebuilds++;
+    }
+
+}
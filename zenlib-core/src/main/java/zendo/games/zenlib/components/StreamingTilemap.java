@@ -0,0 +1,476 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.utils.Point;
+
+/**
+ * A tilemap and collision grid for levels too big to keep in memory, made of square chunks
+ * that are read from a {@link Source} as the view gets near them and dropped again once
+ * they're the least recently needed and over the memory budget.
+ *
+ * Every update the chunks within margin pixels of the view are needed: the ones that aren't
+ * resident yet are handed to the {@link Loader}, which reads them on the spot by default, or on
+ * another thread with something like the desktop module's BackgroundLoader, in which case they
+ * arrive at a later update. Chunks that are needed are never evicted, even over budget.
+ *
+ * The solid cells of each resident chunk get grid Colliders on entities of their own, so movers
+ * collide with whatever's loaded and nothing else. A chunk is split into pieces small enough to
+ * be bucketed into the spatial hash by their bounds, so a query only ever tests the few pieces
+ * around it, however much of the world is loaded. They aren't flagged static, since chunks come
+ * and go all the time and every change would re-sort the static index.
+ */
+public class StreamingTilemap extends Component {
+
+    /**
+     * Where the chunks come from, read may be called from a loader thread
+     */
+    public interface Source {
+        int tileSize();
+        int columns();
+        int rows();
+        int chunkSize();
+
+        /**
+         * Fill tiles (chunk size squared ids, row by row) and solid (a row of bits per chunk row),
+         * or return false for an empty chunk
+         */
+        boolean read(int chunkX, int chunkY, short[] tiles, int[] solid);
+    }
+
+    /**
+     * Runs chunk reads, either right away or on another thread
+     */
+    public interface Loader {
+        void load(Runnable read);
+    }
+
+    public static final Loader immediate = Runnable::run;
+
+    public static final long default_budget = 8 * 1024 * 1024;
+
+    static class Chunk {
+        int chunkX;
+        int chunkY;
+        short[] tiles;
+        int[] solid;
+
+        // set on the loading thread, published through the finished list
+        boolean empty;
+        boolean loaded;
+
+        // the colliders for its solid cells, one per piece that has any
+        Entity[] entities;
+        int entityCount;
+
+        // least recently used list, only while loaded
+        Chunk newer;
+        Chunk older;
+        int needed;
+    }
+
+    public Point origin;
+    public int mask;
+
+    // extra pixels around the view to load ahead of time
+    public int margin;
+
+    private Source source;
+    private Tileset tileset;
+    private Loader loader;
+
+    private int tileSize;
+    private int columns;
+    private int rows;
+    private int chunkSize;
+    private int chunkColumns;
+    private int chunkRows;
+    private long chunkBytes;
+    private long budget;
+
+    // loaded and loading chunks
+    private IntMap<Chunk> chunks;
+    private Array<Chunk> finished;
+    private Array<Chunk> pool;
+    private Chunk newest;
+    private Chunk oldest;
+    private int resident;
+    private int pending;
+
+    private boolean hasView;
+    private float viewLeft;
+    private float viewBottom;
+    private float viewRight;
+    private float viewTop;
+    private int frame;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+    private int submitted;
+
+    public StreamingTilemap() {
+        reset();
+    }
+
+    public StreamingTilemap(Source source, Tileset tileset) {
+        init(source, tileset);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        // these belong to this instance and are reused when it's pooled
+        if (origin == null) {
+            origin = Point.zero();
+            chunks = new IntMap<>();
+            finished = new Array<>();
+            pool = new Array<>();
+        }
+        origin.set(0, 0);
+        mask = Mask.solid;
+        margin = 0;
+        source = null;
+        tileset = null;
+        loader = immediate;
+        budget = default_budget;
+        chunks.clear();
+        finished.clear();
+        newest = null;
+        oldest = null;
+        resident = 0;
+        pending = 0;
+        hasView = false;
+        resetStats();
+    }
+
+    public void init(Source source, Tileset tileset) {
+        assert(source.chunkSize() <= ChunkFile.max_chunk_size) : "Chunk size is too big for a row of solid bits";
+        this.source       = source;
+        this.tileset      = tileset;
+        this.tileSize     = source.tileSize();
+        this.columns      = source.columns();
+        this.rows         = source.rows();
+        this.chunkSize    = source.chunkSize();
+        this.chunkColumns = (columns + chunkSize - 1) / chunkSize;
+        this.chunkRows    = (rows + chunkSize - 1) / chunkSize;
+        this.chunkBytes   = ChunkFile.recordBytes(chunkSize);
+        this.margin       = chunkSize * tileSize / 2;
+        // pooled chunks may be sized for another source
+        pool.clear();
+    }
+
+    @Override
+    public <T extends Component> void copyFrom(T other) {
+        super.copyFrom(other);
+        if (other instanceof StreamingTilemap) {
+            StreamingTilemap tilemap = (StreamingTilemap) other;
+            this.origin.set(tilemap.origin.x, tilemap.origin.y);
+            this.mask    = tilemap.mask;
+            this.margin  = tilemap.margin;
+            this.loader  = tilemap.loader;
+            this.budget  = tilemap.budget;
+            if (tilemap.source != null) {
+                init(tilemap.source, tilemap.tileset);
+                this.margin = tilemap.margin;
+            }
+        }
+    }
+
+    public void setLoader(Loader loader) {
+        this.loader = (loader != null) ? loader : immediate;
+    }
+
+    /**
+     * The most memory to keep in resident chunk data before the least recently needed chunks are dropped
+     */
+    public void setBudget(long bytes) {
+        this.budget = bytes;
+    }
+
+    public void setView(float x, float y, float width, float height) {
+        hasView    = true;
+        viewLeft   = x;
+        viewBottom = y;
+        viewRight  = x + width;
+        viewTop    = y + height;
+    }
+
+    public void setView(OrthographicCamera camera) {
+        float width  = camera.viewportWidth  * camera.zoom;
+        float height = camera.viewportHeight * camera.zoom;
+        setView(camera.position.x - width / 2f, camera.position.y - height / 2f, width, height);
+    }
+
+    /**
+     * The tile id at a cell, or empty if it's outside the map or its chunk isn't loaded
+     */
+    public int getTile(int x, int y) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows) return Tileset.empty;
+        Chunk chunk = loaded(x / chunkSize, y / chunkSize);
+        if (chunk == null || chunk.empty) return Tileset.empty;
+        return chunk.tiles[(x % chunkSize) + (y % chunkSize) * chunkSize] & 0xFFFF;
+    }
+
+    /**
+     * Whether a cell is solid, false if it's outside the map or its chunk isn't loaded
+     */
+    public boolean isSolid(int x, int y) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows) return false;
+        Chunk chunk = loaded(x / chunkSize, y / chunkSize);
+        if (chunk == null || chunk.empty) return false;
+        return (chunk.solid[y % chunkSize] & (1 << (x % chunkSize))) != 0;
+    }
+
+    public boolean isLoaded(int chunkX, int chunkY) {
+        return loaded(chunkX, chunkY) != null;
+    }
+
+    // chunks that are loaded, and loads that haven't finished yet
+    public int resident() {
+        return resident;
+    }
+
+    public int pending() {
+        return pending;
+    }
+
+    public long memory() {
+        return resident * chunkBytes;
+    }
+
+    // needed chunks that were already loaded, ones that had to be loaded, and ones dropped for the budget
+    public int hits() {
+        return hits;
+    }
+
+    public int misses() {
+        return misses;
+    }
+
+    public int evictions() {
+        return evictions;
+    }
+
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * The number of cells handed to the batch by the last render
+     */
+    public int submitted() {
+        return submitted;
+    }
+
+    @Override
+    public void update(float dt) {
+        if (source == null) return;
+        frame++;
+
+        // request or touch everything that's needed, the least needed end up at the old end of the list
+        if (hasView) {
+            int chunkSpan = chunkSize * tileSize;
+            int baseX = origin.x + entity().position.x;
+            int baseY = origin.y + entity().position.y;
+            int left   = Math.max(0,                (int) Math.floor((viewLeft   - margin - baseX) / chunkSpan));
+            int bottom = Math.max(0,                (int) Math.floor((viewBottom - margin - baseY) / chunkSpan));
+            int right  = Math.min(chunkColumns - 1, (int) Math.floor((viewRight  + margin - baseX) / chunkSpan));
+            int top    = Math.min(chunkRows - 1,    (int) Math.floor((viewTop    + margin - baseY) / chunkSpan));
+            for (int cy = bottom; cy <= top; cy++) {
+                for (int cx = left; cx <= right; cx++) {
+                    need(cx, cy);
+                }
+            }
+        }
+
+        // take in whatever finished loading
+        synchronized (finished) {
+            for (int i = 0; i < finished.size; i++) {
+                arrive(finished.get(i));
+            }
+            finished.clear();
+        }
+
+        // drop the least recently needed chunks until it's back under budget
+        while (oldest != null && memory() > budget && oldest.needed != frame) {
+            evict(oldest);
+        }
+    }
+
+    @Override
+    public void render(SpriteBatch batch) {
+        submitted = 0;
+        if (source == null || tileset == null) return;
+        int baseX = origin.x + entity().position.x;
+        int baseY = origin.y + entity().position.y;
+        for (Chunk chunk = newest; chunk != null; chunk = chunk.older) {
+            if (chunk.empty) continue;
+            int x0 = baseX + chunk.chunkX * chunkSize * tileSize;
+            int y0 = baseY + chunk.chunkY * chunkSize * tileSize;
+            // only the chunks in view, anything loaded ahead is left alone
+            if (hasView && (x0 >= viewRight || y0 >= viewTop
+             || x0 + chunkSize * tileSize <= viewLeft || y0 + chunkSize * tileSize <= viewBottom)) {
+                continue;
+            }
+            for (int y = 0; y < chunkSize; y++) {
+                for (int x = 0; x < chunkSize; x++) {
+                    int tile = chunk.tiles[x + y * chunkSize] & 0xFFFF;
+                    if (tile != Tileset.empty) {
+                        batch.draw(tileset.get(tile), x0 + x * tileSize, y0 + y * tileSize, tileSize, tileSize);
+                        submitted++;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroyed() {
+        // loads that are still in flight finish into chunks that are no longer referenced
+        while (oldest != null) {
+            evict(oldest);
+        }
+        chunks.clear();
+        pending = 0;
+    }
+
+    private Chunk loaded(int chunkX, int chunkY) {
+        if (chunkX < 0 || chunkY < 0 || chunkX >= chunkColumns || chunkY >= chunkRows) return null;
+        Chunk chunk = chunks.get(chunkX + chunkY * chunkColumns);
+        return (chunk != null && chunk.loaded) ? chunk : null;
+    }
+
+    private void need(int chunkX, int chunkY) {
+        int key = chunkX + chunkY * chunkColumns;
+        Chunk chunk = chunks.get(key);
+        if (chunk != null) {
+            chunk.needed = frame;
+            if (chunk.loaded) {
+                hits++;
+                unlink(chunk);
+                link(chunk);
+            }
+            return;
+        }
+
+        misses++;
+        chunk = (pool.size > 0) ? pool.pop() : new Chunk();
+        if (chunk.tiles == null) {
+            chunk.tiles = new short[chunkSize * chunkSize];
+            chunk.solid = new int[chunkSize];
+        }
+        chunk.chunkX = chunkX;
+        chunk.chunkY = chunkY;
+        chunk.loaded = false;
+        chunk.needed = frame;
+        chunks.put(key, chunk);
+        pending++;
+
+        final Chunk loading = chunk;
+        final Source from = source;
+        loader.load(() -> {
+            loading.empty = !from.read(loading.chunkX, loading.chunkY, loading.tiles, loading.solid);
+            synchronized (finished) {
+                finished.add(loading);
+            }
+        });
+    }
+
+    private void arrive(Chunk chunk) {
+        if (chunks.get(chunk.chunkX + chunk.chunkY * chunkColumns) != chunk) {
+            // requested before this tilemap was reset or destroyed
+            return;
+        }
+        pending--;
+        chunk.loaded = true;
+        link(chunk);
+        resident++;
+
+        if (!chunk.empty) {
+            // in square pieces small enough for the spatial hash, so queries only test the pieces near them
+            int cellSize = world().collisions().cellSize();
+            int span = (int) Math.sqrt(Collisions.max_cells) - 1;
+            int piece = Math.max(1, Math.min(chunkSize, span * cellSize / tileSize));
+            for (int py = 0; py < chunkSize; py += piece) {
+                for (int px = 0; px < chunkSize; px += piece) {
+                    addPiece(chunk, px, py, Math.min(piece, chunkSize - px), Math.min(piece, chunkSize - py));
+                }
+            }
+        }
+    }
+
+    private void addPiece(Chunk chunk, int x0, int y0, int w, int h) {
+        int bits = (w == 32) ? -1 : ((1 << w) - 1) << x0;
+        boolean any = false;
+        for (int y = y0; y < y0 + h; y++) {
+            any |= (chunk.solid[y] & bits) != 0;
+        }
+        if (!any) return;
+
+        Entity piece = world().addEntity(
+                origin.x + entity().position.x + (chunk.chunkX * chunkSize + x0) * tileSize,
+                origin.y + entity().position.y + (chunk.chunkY * chunkSize + y0) * tileSize);
+        int tile = tileSize;
+        Collider collider = piece.add(Collider.class, c -> c.initGrid(tile, w, h));
+        // straight into the grid, loading isn't a change for the world's journal
+        Collider.Grid grid = collider.getGrid();
+        for (int y = 0; y < h; y++) {
+            int row = (chunk.solid[y0 + y] & bits) >>> x0;
+            while (row != 0) {
+                int x = Integer.numberOfTrailingZeros(row);
+                grid.set(x, y, true);
+                row &= row - 1;
+            }
+        }
+        collider.setMask(mask);
+
+        if (chunk.entities == null || chunk.entityCount == chunk.entities.length) {
+            Entity[] resized = new Entity[(chunk.entities == null) ? 1 : chunk.entityCount * 2];
+            if (chunk.entities != null) {
+                System.arraycopy(chunk.entities, 0, resized, 0, chunk.entityCount);
+            }
+            chunk.entities = resized;
+        }
+        chunk.entities[chunk.entityCount++] = piece;
+    }
+
+    private void evict(Chunk chunk) {
+        unlink(chunk);
+        chunks.remove(chunk.chunkX + chunk.chunkY * chunkColumns);
+        for (int i = 0; i < chunk.entityCount; i++) {
+            world().destroyEntity(chunk.entities[i]);
+            chunk.entities[i] = null;
+        }
+        chunk.entityCount = 0;
+        chunk.loaded = false;
+        resident--;
+        evictions++;
+        pool.add(chunk);
+    }
+
+    private void link(Chunk chunk) {
+        chunk.older = newest;
+        chunk.newer = null;
+        if (newest != null) newest.newer = chunk;
+        newest = chunk;
+        if (oldest == null) oldest = chunk;
+    }
+
+    private void unlink(Chunk chunk) {
+        if (chunk.newer != null) chunk.newer.older = chunk.older;
+        else                     newest = chunk.older;
+        if (chunk.older != null) chunk.older.newer = chunk.newer;
+        else                     oldest = chunk.newer;
+        chunk.newer = null;
+        chunk.older = null;
+    }
+
+}
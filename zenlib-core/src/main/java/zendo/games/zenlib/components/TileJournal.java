@@ -0,0 +1,157 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * The cells of a World's tilemaps and grid colliders that changed since the last update,
+ * coalesced into a handful of dirty rectangles so that anything built from them, like render
+ * caches or navigation data, can refresh just those areas once per update instead of everything.
+ *
+ * Changes are in cell coordinates, so the tilemaps and grids writing to the same journal are
+ * expected to line up cell for cell, the way a level's tiles and its collision grid do. Each
+ * rectangle also carries what kind of change it holds. Nothing is recorded while there are no listeners.
+ */
+public class TileJournal {
+
+    // kinds of change
+    public static final int tiles = 1;
+    public static final int solid = 2;
+
+    // past this many rectangles a new change is merged into whichever one grows the least
+    static final int max_rects = 32;
+
+    public interface Listener {
+        void changed(int x, int y, int w, int h, int kinds);
+    }
+
+    private final Array<Listener> listeners;
+
+    // dirty rectangles, right and top exclusive
+    private final int[] left;
+    private final int[] bottom;
+    private final int[] right;
+    private final int[] top;
+    private final int[] kinds;
+    private int count;
+
+    private int marks;
+
+    public TileJournal() {
+        this.listeners = new Array<>();
+        this.left   = new int[max_rects];
+        this.bottom = new int[max_rects];
+        this.right  = new int[max_rects];
+        this.top    = new int[max_rects];
+        this.kinds  = new int[max_rects];
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.removeValue(listener, true);
+    }
+
+    /**
+     * Record that the cells in columns [x, x + w) of rows [y, y + h) changed
+     */
+    public void mark(int x, int y, int w, int h, int kind) {
+        if (listeners.size == 0 || w <= 0 || h <= 0) return;
+        marks++;
+
+        int x1 = x + w;
+        int y1 = y + h;
+
+        // grow a rectangle it overlaps or touches, then fold in any others that one now reaches
+        for (int i = 0; i < count; i++) {
+            if (x <= right[i] && left[i] <= x1 && y <= top[i] && bottom[i] <= y1) {
+                grow(i, x, y, x1, y1, kind);
+                absorb(i);
+                return;
+            }
+        }
+
+        if (count < max_rects) {
+            left[count]   = x;
+            bottom[count] = y;
+            right[count]  = x1;
+            top[count]    = y1;
+            kinds[count]  = kind;
+            count++;
+            return;
+        }
+
+        // full, merge into the one whose area grows the least
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            long area = (long) (right[i] - left[i]) * (top[i] - bottom[i]);
+            long merged = (long) (Math.max(right[i], x1) - Math.min(left[i], x))
+                               * (Math.max(top[i], y1) - Math.min(bottom[i], y));
+            if (merged - area < bestGrowth) {
+                bestGrowth = merged - area;
+                best = i;
+            }
+        }
+        grow(best, x, y, x1, y1, kind);
+        absorb(best);
+    }
+
+    /**
+     * Hand every dirty rectangle to the listeners and start over, called at the end of each World update
+     */
+    public void flush() {
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < listeners.size; j++) {
+                listeners.get(j).changed(left[i], bottom[i], right[i] - left[i], top[i] - bottom[i], kinds[i]);
+            }
+        }
+        count = 0;
+    }
+
+    // the number of dirty rectangles waiting for the next flush
+    public int dirty() {
+        return count;
+    }
+
+    // the number of changes recorded, before coalescing
+    public int marks() {
+        return marks;
+    }
+
+    public void resetStats() {
+        marks = 0;
+    }
+
+    private void grow(int i, int x0, int y0, int x1, int y1, int kind) {
+        left[i]   = Math.min(left[i], x0);
+        bottom[i] = Math.min(bottom[i], y0);
+        right[i]  = Math.max(right[i], x1);
+        top[i]    = Math.max(top[i], y1);
+        kinds[i] |= kind;
+    }
+
+    private void absorb(int i) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int j = count - 1; j >= 0; j--) {
+                if (j == i) continue;
+                if (left[j] <= right[i] && left[i] <= right[j] && bottom[j] <= top[i] && bottom[i] <= top[j]) {
+                    grow(i, left[j], bottom[j], right[j], top[j], kinds[j]);
+                    // move the last one into the hole, keeping track of i if it was the last
+                    int last = --count;
+                    left[j]   = left[last];
+                    bottom[j] = bottom[last];
+                    right[j]  = right[last];
+                    top[j]    = top[last];
+                    kinds[j]  = kinds[last];
+                    if (i == last) i = j;
+                    merged = true;
+                }
+            }
+        }
+    }
+
+}
@@ -1,16 +1,75 @@
 package zendo.games.zenlib.components;
 
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import zendo.games.zenlib.ecs.Component;
 import zendo.games.zenlib.utils.Point;
 
+import java.util.Arrays;
+
+/**
+ * A grid of tiles, split into square chunks of chunk_size cells.
+ *
+ * Each cell is an unsigned short id into a {@link Tileset}, which can be shared between tilemaps.
+ * Cells can be set by region, which adds the region to the tileset the first time it's used,
+ * or by id, including in bulk with {@link #fillTiles} and {@link #setTiles}/{@link #getTiles},
+ * which work on the id array a row at a time.
+ *
+ * With a view set through {@link #setView}, render only visits the chunks that intersect the view
+ * and skips the ones that are empty, then only the cells of those chunks that are in view.
+ * Without one it draws every cell like it always has.
+ *
+ * With {@link #setCached(boolean)} each chunk instead keeps the sprite vertices for all of its cells,
+ * built the first time it's drawn and again only after one of its cells changes, and render hands whole
+ * chunks to the batch as blocks of vertices, one per run of cells that share a texture.
+ */
 public class Tilemap extends Component {
 
+    public static final int chunk_size = 16;
+
+    // x, y, color, u, v for each corner of a sprite, in the order SpriteBatch expects
+    public static final int floats_per_cell = 20;
+
+    static class Chunk {
+        float[] vertices = new float[0];
+        int floats;
+        // the vertices of run i end at runEnds[i] and use runTextures[i]
+        Texture[] runTextures = new Texture[1];
+        int[] runEnds = new int[1];
+        int runs;
+        boolean dirty = true;
+    }
+
     private int tileSize;
     private int columns;
     private int rows;
-    protected TextureRegion[] grid;
+    protected short[] tiles;
+    protected Tileset tileset;
+
+    // chunk columns and rows, and the number of non-empty cells in each chunk
+    private int chunkColumns;
+    private int chunkRows;
+    private int[] chunkCounts;
+
+    // vertex caches, when cached
+    private boolean cached;
+    private Chunk[] chunks;
+    private int cachedX;
+    private int cachedY;
+    private float packedColor = Color.WHITE_FLOAT_BITS;
+
+    // world space area to draw, if culling
+    private boolean hasView;
+    private float viewLeft;
+    private float viewBottom;
+    private float viewRight;
+    private float viewTop;
+
+    private int submitted;
+    private int rebuilds;
 
     public Point origin = Point.zero();
 
@@ -22,11 +81,24 @@ public class Tilemap extends Component {
         init(tileSize, columns, rows);
     }
 
+    public Tilemap(int tileSize, int columns, int rows, Tileset tileset) {
+        init(tileSize, columns, rows, tileset);
+    }
+
     public void init(int tileSize, int columns, int rows) {
-        this.tileSize = tileSize;
-        this.columns  = columns;
-        this.rows     = rows;
-        this.grid     = new TextureRegion[columns * rows];
+        init(tileSize, columns, rows, new Tileset());
+    }
+
+    public void init(int tileSize, int columns, int rows, Tileset tileset) {
+        this.tileSize     = tileSize;
+        this.columns      = columns;
+        this.rows         = rows;
+        this.tiles        = new short[columns * rows];
+        this.tileset      = tileset;
+        this.chunkColumns = (columns + chunk_size - 1) / chunk_size;
+        this.chunkRows    = (rows + chunk_size - 1) / chunk_size;
+        this.chunkCounts  = new int[chunkColumns * chunkRows];
+        this.chunks       = null;
     }
 
     public int getTileSize() {
@@ -41,43 +113,446 @@ public class Tilemap extends Component {
         return columns;
     }
 
+    public Tileset getTileset() {
+        return tileset;
+    }
+
     @Override
     public <T extends Component> void copyFrom(T other) {
         super.copyFrom(other);
         if (other instanceof Tilemap) {
             Tilemap tilemap = (Tilemap) other;
-            this.tileSize = tilemap.tileSize;
-            this.columns  = tilemap.columns;
-            this.rows     = tilemap.rows;
-            this.origin   = tilemap.origin;
-            this.grid     = tilemap.grid;
+            this.tileSize     = tilemap.tileSize;
+            this.columns      = tilemap.columns;
+            this.rows         = tilemap.rows;
+            this.origin       = tilemap.origin;
+            this.tiles        = tilemap.tiles;
+            this.tileset      = tilemap.tileset;
+            this.chunkColumns = tilemap.chunkColumns;
+            this.chunkRows    = tilemap.chunkRows;
+            this.chunkCounts  = tilemap.chunkCounts;
+            this.cached       = tilemap.cached;
+            this.chunks       = tilemap.chunks;
+            this.cachedX      = tilemap.cachedX;
+            this.cachedY      = tilemap.cachedY;
+            this.packedColor  = tilemap.packedColor;
+            this.hasView      = tilemap.hasView;
+            this.viewLeft     = tilemap.viewLeft;
+            this.viewBottom   = tilemap.viewBottom;
+            this.viewRight    = tilemap.viewRight;
+            this.viewTop      = tilemap.viewTop;
+        }
+    }
+
+    /**
+     * Only draw what's inside this area of world space from now on
+     */
+    public void setView(float x, float y, float width, float height) {
+        hasView    = true;
+        viewLeft   = x;
+        viewBottom = y;
+        viewRight  = x + width;
+        viewTop    = y + height;
+    }
+
+    /**
+     * Only draw what the camera can see from now on, needs calling again whenever the camera moves or zooms
+     */
+    public void setView(OrthographicCamera camera) {
+        float width  = camera.viewportWidth  * camera.zoom;
+        float height = camera.viewportHeight * camera.zoom;
+        setView(camera.position.x - width / 2f, camera.position.y - height / 2f, width, height);
+    }
+
+    /**
+     * Go back to drawing every cell
+     */
+    public void clearView() {
+        hasView = false;
+    }
+
+    /**
+     * Keep prebuilt vertices per chunk and draw from those, or go back to drawing cell by cell
+     */
+    public void setCached(boolean cached) {
+        this.cached = cached;
+        if (cached && chunks == null) {
+            chunks = new Chunk[chunkColumns * chunkRows];
+        }
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * The tint baked into cached vertices
+     */
+    public void setColor(Color color) {
+        float packed = color.toFloatBits();
+        if (packed != packedColor) {
+            packedColor = packed;
+            invalidate();
         }
     }
 
+    /**
+     * The number of cells handed to the batch by the last render
+     */
+    public int submitted() {
+        return submitted;
+    }
+
+    /**
+     * The number of times the vertices of a chunk have been built
+     */
+    public int rebuilds() {
+        return rebuilds;
+    }
+
     @Override
     public void render(SpriteBatch batch) {
+        if (cached) {
+            renderCached(batch);
+        } else if (hasView) {
+            renderView(batch);
+        } else {
+            renderAll(batch);
+        }
+    }
+
+    private void renderAll(SpriteBatch batch) {
+        submitted = 0;
         for (int x = 0; x < columns; x++) {
             for (int y = 0; y < rows; y++) {
-                if (grid[x + y * columns] != null) {
-                    batch.draw(grid[x + y * columns],
+                int tile = tiles[x + y * columns] & 0xFFFF;
+                if (tile != Tileset.empty) {
+                    batch.draw(tileset.get(tile),
                             origin.x + x * tileSize + entity().position.x,
                             origin.y + y * tileSize + entity().position.y,
                             tileSize, tileSize);
+                    submitted++;
                 }
             }
         }
     }
 
-    public void setCell(int x, int y, TextureRegion texture) {
+    private void renderView(SpriteBatch batch) {
+        submitted = 0;
+        int baseX = origin.x + entity().position.x;
+        int baseY = origin.y + entity().position.y;
+
+        // the cells in view, inclusive
+        int left   = Math.max(0,           (int) Math.floor((viewLeft   - baseX) / tileSize));
+        int bottom = Math.max(0,           (int) Math.floor((viewBottom - baseY) / tileSize));
+        int right  = Math.min(columns - 1, (int) Math.ceil ((viewRight  - baseX) / tileSize) - 1);
+        int top    = Math.min(rows - 1,    (int) Math.ceil ((viewTop    - baseY) / tileSize) - 1);
+        if (left > right || bottom > top) return;
+
+        for (int cy = bottom / chunk_size; cy <= top / chunk_size; cy++) {
+            for (int cx = left / chunk_size; cx <= right / chunk_size; cx++) {
+                if (chunkCounts[cx + cy * chunkColumns] == 0) continue;
+
+                // the part of the chunk that's in view
+                int x0 = Math.max(left,   cx * chunk_size);
+                int y0 = Math.max(bottom, cy * chunk_size);
+                int x1 = Math.min(right,  cx * chunk_size + chunk_size - 1);
+                int y1 = Math.min(top,    cy * chunk_size + chunk_size - 1);
+                for (int y = y0; y <= y1; y++) {
+                    int row = y * columns;
+                    for (int x = x0; x <= x1; x++) {
+                        int tile = tiles[x + row] & 0xFFFF;
+                        if (tile != Tileset.empty) {
+                            batch.draw(tileset.get(tile), baseX + x * tileSize, baseY + y * tileSize, tileSize, tileSize);
+                            submitted++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void renderCached(SpriteBatch batch) {
+        submitted = 0;
+        int baseX = origin.x + entity().position.x;
+        int baseY = origin.y + entity().position.y;
+
+        // whole chunks, the batch doesn't mind a few cells past the edge of the view
+        int left   = 0;
+        int bottom = 0;
+        int right  = chunkColumns - 1;
+        int top    = chunkRows - 1;
+        if (hasView) {
+            int chunkSize = chunk_size * tileSize;
+            left   = Math.max(left,   (int) Math.floor((viewLeft   - baseX) / chunkSize));
+            bottom = Math.max(bottom, (int) Math.floor((viewBottom - baseY) / chunkSize));
+            right  = Math.min(right,  (int) Math.ceil ((viewRight  - baseX) / chunkSize) - 1);
+            top    = Math.min(top,    (int) Math.ceil ((viewTop    - baseY) / chunkSize) - 1);
+        }
+
+        for (int cy = bottom; cy <= top; cy++) {
+            for (int cx = left; cx <= right; cx++) {
+                int index = cx + cy * chunkColumns;
+                if (chunkCounts[index] == 0) continue;
+
+                Chunk chunk = chunk(cx, cy);
+                int start = 0;
+                for (int run = 0; run < chunk.runs; run++) {
+                    int end = chunk.runEnds[run];
+                    batch.draw(chunk.runTextures[run], chunk.vertices, start, end - start);
+                    start = end;
+                }
+                submitted += chunk.floats / floats_per_cell;
+            }
+        }
+    }
+
+    /**
+     * The vertices for a chunk, building them first if any of its cells changed, see {@link #chunkFloats(int, int)}
+     * for how many of them are in use
+     */
+    public float[] chunkVertices(int chunkX, int chunkY) {
+        return chunk(chunkX, chunkY).vertices;
+    }
+
+    public int chunkFloats(int chunkX, int chunkY) {
+        return chunk(chunkX, chunkY).floats;
+    }
+
+    private Chunk chunk(int chunkX, int chunkY) {
+        assert(cached) : "Tilemap is not cached";
+
+        // vertices are built in world space, so they're all stale once the tilemap moves
+        int baseX = origin.x + entity().position.x;
+        int baseY = origin.y + entity().position.y;
+        if (baseX != cachedX || baseY != cachedY) {
+            cachedX = baseX;
+            cachedY = baseY;
+            invalidate();
+        }
+
+        int index = chunkX + chunkY * chunkColumns;
+        Chunk chunk = chunks[index];
+        if (chunk == null) {
+            chunk = new Chunk();
+            chunks[index] = chunk;
+        }
+        if (chunk.dirty) {
+            build(chunk, chunkX, chunkY);
+        }
+        return chunk;
+    }
+
+    private void build(Chunk chunk, int chunkX, int chunkY) {
+        int needed = chunkCounts[chunkX + chunkY * chunkColumns] * floats_per_cell;
+        if (chunk.vertices.length < needed) {
+            chunk.vertices = new float[needed];
+        }
+
+        float color = packedColor;
+        float[] vertices = chunk.vertices;
+        int floats = 0;
+        chunk.runs = 0;
+        Texture texture = null;
+
+        int x0 = chunkX * chunk_size;
+        int y0 = chunkY * chunk_size;
+        int x1 = Math.min(columns, x0 + chunk_size);
+        int y1 = Math.min(rows, y0 + chunk_size);
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int tile = tiles[x + y * columns] & 0xFFFF;
+                if (tile == Tileset.empty) continue;
+                TextureRegion region = tileset.get(tile);
+
+                // a new run whenever the texture changes
+                if (chunk.runs == 0 || region.getTexture() != texture) {
+                    if (chunk.runs > 0) {
+                        chunk.runEnds[chunk.runs - 1] = floats;
+                    }
+                    if (chunk.runs == chunk.runEnds.length) {
+                        int capacity = chunk.runs * 2;
+                        Texture[] textures = new Texture[capacity];
+                        System.arraycopy(chunk.runTextures, 0, textures, 0, chunk.runs);
+                        chunk.runTextures = textures;
+                        int[] ends = new int[capacity];
+                        System.arraycopy(chunk.runEnds, 0, ends, 0, chunk.runs);
+                        chunk.runEnds = ends;
+                    }
+                    texture = region.getTexture();
+                    chunk.runTextures[chunk.runs++] = texture;
+                }
+
+                float left   = cachedX + x * tileSize;
+                float bottom = cachedY + y * tileSize;
+                float right  = left + tileSize;
+                float top    = bottom + tileSize;
+                float u  = region.getU();
+                float v  = region.getV2();
+                float u2 = region.getU2();
+                float v2 = region.getV();
+
+                vertices[floats++] = left;
+                vertices[floats++] = bottom;
+                vertices[floats++] = color;
+                vertices[floats++] = u;
+                vertices[floats++] = v;
+
+                vertices[floats++] = left;
+                vertices[floats++] = top;
+                vertices[floats++] = color;
+                vertices[floats++] = u;
+                vertices[floats++] = v2;
+
+                vertices[floats++] = right;
+                vertices[floats++] = top;
+                vertices[floats++] = color;
+                vertices[floats++] = u2;
+                vertices[floats++] = v2;
+
+                vertices[floats++] = right;
+                vertices[floats++] = bottom;
+                vertices[floats++] = color;
+                vertices[floats++] = u2;
+                vertices[floats++] = v;
+            }
+        }
+        if (chunk.runs > 0) {
+            chunk.runEnds[chunk.runs - 1] = floats;
+        }
+        // don't hold on to textures that are no longer used
+        for (int run = chunk.runs; run < chunk.runTextures.length; run++) {
+            chunk.runTextures[run] = null;
+        }
+        chunk.floats = floats;
+        chunk.dirty = false;
+        rebuilds++;
+    }
+
+    private void invalidate() {
+        if (chunks == null) return;
+        for (Chunk chunk : chunks) {
+            if (chunk != null) {
+                chunk.dirty = true;
+            }
+        }
+    }
+
+    public TextureRegion getCell(int x, int y) {
         assert(x >= 0 && y >= 0 && x < columns && y < rows) : "Tilemap indices out of bounds";
-        grid[x + y * columns] = texture;
+        return tileset.get(tiles[x + y * columns] & 0xFFFF);
+    }
+
+    public void setCell(int x, int y, TextureRegion texture) {
+        setTile(x, y, tileset.id(texture));
     }
 
     public void setCells(int x, int y, int w, int h, TextureRegion texture) {
-        assert(x >= 0 && y >= 0 && x + w < columns && y + h < rows) : "Tilemap indices out of bounds";
-        for (int ix = x; ix < x + w; ix++) {
-            for (int iy = y; iy < y + h; iy++) {
-                grid[ix + iy * columns] = texture;
+        fillTiles(x, y, w, h, tileset.id(texture));
+    }
+
+    public int getTile(int x, int y) {
+        assert(x >= 0 && y >= 0 && x < columns && y < rows) : "Tilemap indices out of bounds";
+        return tiles[x + y * columns] & 0xFFFF;
+    }
+
+    public void setTile(int x, int y, int tile) {
+        assert(x >= 0 && y >= 0 && x < columns && y < rows) : "Tilemap indices out of bounds";
+        assert(tile >= 0 && tile < tileset.size()) : "Tile id is not in the Tileset";
+        int index = x + y * columns;
+        boolean had = tiles[index] != Tileset.empty;
+        boolean has = tile != Tileset.empty;
+        tiles[index] = (short) tile;
+        int chunk = (x / chunk_size) + (y / chunk_size) * chunkColumns;
+        if (had != has) {
+            chunkCounts[chunk] += has ? 1 : -1;
+        }
+        if (chunks != null && chunks[chunk] != null) {
+            chunks[chunk].dirty = true;
+        }
+        journal(x, y, 1, 1);
+    }
+
+    /**
+     * Set every cell in columns [x, x + w) of rows [y, y + h) to the same tile id
+     */
+    public void fillTiles(int x, int y, int w, int h, int tile) {
+        assert(x >= 0 && y >= 0 && x + w <= columns && y + h <= rows) : "Tilemap indices out of bounds";
+        assert(tile >= 0 && tile < tileset.size()) : "Tile id is not in the Tileset";
+        if (w <= 0 || h <= 0) return;
+        short value = (short) tile;
+        for (int iy = y; iy < y + h; iy++) {
+            int row = iy * columns;
+            Arrays.fill(tiles, row + x, row + x + w, value);
+        }
+        changed(x, y, w, h);
+    }
+
+    /**
+     * Copy a w by h block of tile ids, stored row by row starting at offset in source, into the cells at (x, y)
+     */
+    public void setTiles(int x, int y, int w, int h, short[] source, int offset) {
+        assert(x >= 0 && y >= 0 && x + w <= columns && y + h <= rows) : "Tilemap indices out of bounds";
+        if (w <= 0 || h <= 0) return;
+        for (int iy = 0; iy < h; iy++) {
+            System.arraycopy(source, offset + iy * w, tiles, (y + iy) * columns + x, w);
+        }
+        changed(x, y, w, h);
+    }
+
+    /**
+     * Copy the tile ids of a w by h block of cells at (x, y) into target, row by row starting at offset
+     */
+    public void getTiles(int x, int y, int w, int h, short[] target, int offset) {
+        assert(x >= 0 && y >= 0 && x + w <= columns && y + h <= rows) : "Tilemap indices out of bounds";
+        for (int iy = 0; iy < h; iy++) {
+            System.arraycopy(tiles, (y + iy) * columns + x, target, offset + iy * w, w);
+        }
+    }
+
+    /**
+     * Copy a block of cells from another tilemap with the same tileset
+     */
+    public void copyTiles(Tilemap from, int fromX, int fromY, int x, int y, int w, int h) {
+        assert(from.tileset == tileset) : "Tilemaps don't share a Tileset";
+        assert(fromX >= 0 && fromY >= 0 && fromX + w <= from.columns && fromY + h <= from.rows) : "Tilemap indices out of bounds";
+        assert(x >= 0 && y >= 0 && x + w <= columns && y + h <= rows) : "Tilemap indices out of bounds";
+        if (w <= 0 || h <= 0) return;
+        // rows are copied in the order that's safe when copying within the same tilemap
+        boolean up = (from == this && fromY < y);
+        for (int i = 0; i < h; i++) {
+            int iy = up ? h - 1 - i : i;
+            System.arraycopy(from.tiles, (fromY + iy) * from.columns + fromX, tiles, (y + iy) * columns + x, w);
+        }
+        changed(x, y, w, h);
+    }
+
+    // tell the world's journal, if this is in a world yet
+    private void journal(int x, int y, int w, int h) {
+        if (world() != null) {
+            world().journal().mark(x, y, w, h, TileJournal.tiles);
+        }
+    }
+
+    // recount and mark dirty every chunk a bulk change touched
+    private void changed(int x, int y, int w, int h) {
+        journal(x, y, w, h);
+        for (int cy = y / chunk_size; cy <= (y + h - 1) / chunk_size; cy++) {
+            for (int cx = x / chunk_size; cx <= (x + w - 1) / chunk_size; cx++) {
+                int count = 0;
+                int x1 = Math.min(columns, (cx + 1) * chunk_size);
+                int y1 = Math.min(rows, (cy + 1) * chunk_size);
+                for (int iy = cy * chunk_size; iy < y1; iy++) {
+                    int row = iy * columns;
+                    for (int ix = cx * chunk_size; ix < x1; ix++) {
+                        if (tiles[row + ix] != Tileset.empty) count++;
+                    }
+                }
+                int chunk = cx + cy * chunkColumns;
+                chunkCounts[chunk] = count;
+                if (chunks != null && chunks[chunk] != null) {
+                    chunks[chunk].dirty = true;
+                }
             }
         }
     }
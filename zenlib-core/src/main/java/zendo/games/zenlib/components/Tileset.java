@@ -0,0 +1,65 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * The regions a Tilemap's tile ids refer to, which any number of tilemaps can share.
+ * Id 0 is always the empty tile, ids are unsigned shorts so there's room for 65535 regions.
+ */
+public class Tileset {
+
+    public static final int empty = 0;
+    public static final int max_tiles = 0xFFFF;
+
+    private TextureRegion[] regions;
+    private int size;
+
+    // TextureRegion doesn't override equals, so this is by identity
+    private final ObjectIntMap<TextureRegion> ids;
+
+    public Tileset() {
+        this.regions = new TextureRegion[16];
+        this.size = 1;
+        this.ids = new ObjectIntMap<>();
+    }
+
+    /**
+     * The id of a region, adding it if it hasn't been seen before; null is the empty tile
+     */
+    public int id(TextureRegion region) {
+        if (region == null) return empty;
+        int id = ids.get(region, empty);
+        return (id != empty) ? id : add(region);
+    }
+
+    /**
+     * Add a region under a new id, even if it's already in the set
+     */
+    public int add(TextureRegion region) {
+        assert(region != null) : "Can't add a null region to a Tileset";
+        assert(size <= max_tiles) : "Too many regions in Tileset";
+        if (size == regions.length) {
+            TextureRegion[] resized = new TextureRegion[regions.length * 2];
+            System.arraycopy(regions, 0, resized, 0, size);
+            regions = resized;
+        }
+        regions[size] = region;
+        if (!ids.containsKey(region)) {
+            ids.put(region, size);
+        }
+        return size++;
+    }
+
+    public TextureRegion get(int id) {
+        return regions[id];
+    }
+
+    /**
+     * The number of ids in use, including the empty one
+     */
+    public int size() {
+        return size;
+    }
+
+}
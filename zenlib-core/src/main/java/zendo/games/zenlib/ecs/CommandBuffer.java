@@ -0,0 +1,43 @@
+package zendo.games.zenlib.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Structural changes recorded while a World is updating, applied in order once the update is done.
+ *
+ * Commands are stored as an op code and a target in two parallel arrays
+ * that only grow, so recording doesn't allocate once the buffer has warmed up.
+ */
+class CommandBuffer {
+
+    static final int add_component     = 0;
+    static final int destroy_component = 1;
+    static final int destroy_entity    = 2;
+    static final int activate          = 3;
+    static final int deactivate        = 4;
+
+    int[] ops;
+    Object[] targets;
+    int count;
+
+    CommandBuffer() {
+        ops = new int[64];
+        targets = new Object[64];
+    }
+
+    void push(int op, Object target) {
+        if (count == ops.length) {
+            ops = Arrays.copyOf(ops, ops.length * 2);
+            targets = Arrays.copyOf(targets, targets.length * 2);
+        }
+        ops[count] = op;
+        targets[count] = target;
+        count++;
+    }
+
+    void clear() {
+        Arrays.fill(targets, 0, count, null);
+        count = 0;
+    }
+
+}
@@ -3,13 +3,40 @@ package zendo.games.zenlib.ecs;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 
-import java.util.HashMap;
-import java.util.Map;
+public abstract class Component {
+
+    /**
+     * Marks a component type whose update only touches its own component and entity,
+     * so that instances can be updated concurrently when the World has a parallel updater.
+     * Parallel safe components must not add or destroy components or entities in update.
+     */
+    public interface ParallelSafe {}
+
+    /**
+     * Constructs new instances of a component type for its pool, see {@link World#register(Class, Factory)}
+     */
+    public interface Factory<T extends Component> {
+        T create();
+    }
 
-public abstract class Component extends ListNode<Component> {
+    /**
+     * Sets up a freshly reset pooled instance in place, see {@link World#add(Entity, Class, Initializer)}
+     */
+    public interface Initializer<T extends Component> {
+        void init(T component);
+    }
 
     protected Entity entity;
 
+    // stable slot in the type's ComponentStore, assigned on first insert
+    int handle = -1;
+
+    // the depth and insertion order this component was last sorted with in the World's render list
+    int sortedDepth;
+    long sortedOrder;
+    // where it is in the render list: a slot if it's >= 0, a pending insert at -(index + 2), or -1 if it's not in it
+    int renderIndex = -1;
+
     public int type;
     public int depth;
     public boolean active;
@@ -20,7 +47,6 @@ public abstract class Component extends ListNode<Component> {
         reset();
     }
 
-    @Override
     public void reset() {
         this.entity = null;
         this.type = 0;
@@ -55,6 +81,30 @@ public abstract class Component extends ListNode<Component> {
         return depth;
     }
 
+    public void setDepth(int depth) {
+        // the render list notices the change and moves this component next time it renders
+        this.depth = depth;
+    }
+
+    public Component next() {
+        ComponentStore store = store();
+        if (store == null) return null;
+        int index = store.indexOf(this);
+        return (index >= 0 && index + 1 < store.size()) ? store.get(index + 1) : null;
+    }
+
+    public Component prev() {
+        ComponentStore store = store();
+        if (store == null) return null;
+        int index = store.indexOf(this);
+        return (index > 0) ? store.get(index - 1) : null;
+    }
+
+    private ComponentStore store() {
+        World world = world();
+        return (world != null) ? world.store(type) : null;
+    }
+
     public void destroy() {
         if (entity != null && entity.world != null) {
             entity.world.destroy(this);
@@ -73,21 +123,87 @@ public abstract class Component extends ListNode<Component> {
     public void destroyed() {}
 
 
-    static class Types {
-        private static int counter = 0;
+    public static class Types {
 
-        private static final Map<Class<? extends Component>, Integer> componentTypeMap= new HashMap<>();
-        private static final Map<Integer, Class<? extends Component>> typeComponentMap = new HashMap<>();
+        // Ids are handed out the first time a class is seen and never change.
+        // The class -> id table is copy-on-write: lookups read whatever table is
+        // currently published without locking or allocating, and registration
+        // builds a bigger copy under a lock and then publishes it.
+        private static volatile Table table = new Table(16);
 
-        public static int count() { return counter; }
+        public static int count() {
+            return table.count;
+        }
 
         public static int id(Class<? extends Component> clazz) {
-            if (!componentTypeMap.containsKey(clazz)) {
-                final int type = Types.counter++;
-                componentTypeMap.put(clazz, type);
-                typeComponentMap.put(type, clazz);
+            int id = table.find(clazz);
+            return (id >= 0) ? id : register(clazz);
+        }
+
+        public static Class<? extends Component> clazz(int id) {
+            Table current = table;
+            return (id >= 0 && id < current.count) ? current.classes[id] : null;
+        }
+
+        private static synchronized int register(Class<? extends Component> clazz) {
+            Table current = table;
+            int id = current.find(clazz);
+            if (id < 0) {
+                Table next = current.copy(current.count + 1);
+                id = next.insert(clazz);
+                table = next;
+            }
+            return id;
+        }
+
+        private static class Table {
+            final Class<?>[] keys;
+            final int[] ids;
+            final int mask;
+            Class<? extends Component>[] classes;
+            int count;
+
+            Table(int capacity) {
+                this.keys = new Class[capacity];
+                this.ids = new int[capacity];
+                this.mask = capacity - 1;
+                this.classes = new Class[capacity / 2];
+            }
+
+            int find(Class<?> clazz) {
+                int i = clazz.hashCode() & mask;
+                Class<?> key;
+                while ((key = keys[i]) != null) {
+                    if (key == clazz) return ids[i];
+                    i = (i + 1) & mask;
+                }
+                return -1;
+            }
+
+            int insert(Class<? extends Component> clazz) {
+                int i = clazz.hashCode() & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                int id = count++;
+                keys[i] = clazz;
+                ids[i] = id;
+                classes[id] = clazz;
+                return id;
+            }
+
+            // keep the load factor at or below one half
+            Table copy(int required) {
+                int capacity = keys.length;
+                while (capacity < required * 2) {
+                    capacity *= 2;
+                }
+                Table next = new Table(capacity);
+                for (int id = 0; id < count; id++) {
+                    next.insert(classes[id]);
+                }
+                return next;
             }
-            return componentTypeMap.get(clazz);
         }
     }
 
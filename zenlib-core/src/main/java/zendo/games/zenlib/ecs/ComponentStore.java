@@ -0,0 +1,162 @@
+package zendo.games.zenlib.ecs;
+
+/**
+ * Storage for all the instances of a single component type.
+ *
+ * Live components are packed into a contiguous array and removed by swapping
+ * the last one into the hole, so iterating them is a linear walk over memory.
+ * Each instance also gets a handle the first time it enters the store, which
+ * stays the same for as long as the instance lives (it is pooled along with it)
+ * and maps to the instance's current slot through a sparse index table.
+ */
+public class ComponentStore {
+
+    private static final int initial_capacity = 16;
+
+    public final int type;
+
+    // whether this type implements Component.ParallelSafe
+    boolean parallel;
+
+    // live components, packed
+    Component[] dense;
+    int size;
+
+    // handle -> dense index, -1 when the instance is cached
+    int[] sparse;
+    int handles;
+
+    // destroyed instances waiting to be reused
+    Component[] cache;
+    int cached;
+
+    // constructs instances when the cache is empty, reflection is used if there isn't one
+    Component.Factory<?> factory;
+
+    // pool statistics
+    int created;
+    int reused;
+    int peak;
+
+    ComponentStore(int type) {
+        this.type = type;
+        this.dense = new Component[initial_capacity];
+        this.sparse = new int[initial_capacity];
+        this.cache = new Component[initial_capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int cached() {
+        return cached;
+    }
+
+    // instances constructed because the pool was empty, including reserved ones
+    public int created() {
+        return created;
+    }
+
+    // instances taken from the pool instead of being constructed
+    public int reused() {
+        return reused;
+    }
+
+    // the most instances that were live at the same time
+    public int peak() {
+        return peak;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public Component get(int index) {
+        return dense[index];
+    }
+
+    public Component first() {
+        return (size > 0) ? dense[0] : null;
+    }
+
+    public Component last() {
+        return (size > 0) ? dense[size - 1] : null;
+    }
+
+    public Component resolve(int handle) {
+        if (handle < 0 || handle >= handles) return null;
+        int index = sparse[handle];
+        return (index >= 0) ? dense[index] : null;
+    }
+
+    public int indexOf(Component component) {
+        int handle = component.handle;
+        if (component.type != type || handle < 0 || handle >= handles) return -1;
+        int index = sparse[handle];
+        return (index >= 0 && dense[index] == component) ? index : -1;
+    }
+
+    public boolean contains(Component component) {
+        return indexOf(component) >= 0;
+    }
+
+    Component obtain() {
+        if (cached == 0) return null;
+        Component instance = cache[--cached];
+        cache[cached] = null;
+        return instance;
+    }
+
+    void insert(Component component) {
+        if (component.handle < 0) {
+            if (handles == sparse.length) {
+                sparse = grow(sparse);
+            }
+            component.handle = handles++;
+        }
+        if (size == dense.length) {
+            dense = grow(dense);
+        }
+        sparse[component.handle] = size;
+        dense[size++] = component;
+        if (size > peak) {
+            peak = size;
+        }
+    }
+
+    void remove(Component component) {
+        int index = indexOf(component);
+        if (index < 0) return;
+
+        // swap the last component into the hole
+        Component last = dense[--size];
+        dense[index] = last;
+        sparse[last.handle] = index;
+        dense[size] = null;
+        sparse[component.handle] = -1;
+
+        free(component);
+    }
+
+    // hold on to an instance that isn't live for later
+    void free(Component component) {
+        if (cached == cache.length) {
+            cache = grow(cache);
+        }
+        cache[cached++] = component;
+    }
+
+    private static Component[] grow(Component[] array) {
+        Component[] resized = new Component[array.length * 2];
+        System.arraycopy(array, 0, resized, 0, array.length);
+        return resized;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] resized = new int[array.length * 2];
+        System.arraycopy(array, 0, resized, 0, array.length);
+        return resized;
+    }
+
+}
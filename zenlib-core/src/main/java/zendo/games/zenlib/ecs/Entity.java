@@ -1,28 +1,58 @@
 package zendo.games.zenlib.ecs;
 
+import com.badlogic.gdx.utils.Bits;
 import zendo.games.zenlib.utils.Point;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Entity extends ListNode<Entity> {
 
+    /**
+     * Where this entity is. Unless one was handed to {@link World#addEntity(Point)}, the Point belongs to this
+     * instance and is reset and reused when the World recycles it for a new entity, so a reference kept to it
+     * past this entity's destruction sees the new entity move; keep a copy, like Point.at(position.x, position.y)
+     */
     public Point position;
     public World world;
     public List<Component> components;
     public boolean active;
     public boolean visible;
 
+    // assigned by the World the first time this instance is used, kept when it's recycled
+    int index = -1;
+
+    // index and generation, issued by the World each time this instance is added
+    long handle = World.null_handle;
+
+    // reused for every life of this instance, unless a position is handed to World.addEntity(Point)
+    private final Point ownPosition = Point.zero();
+
+    // lookup by component type id:
+    // the first live instance of each type, how many instances there are,
+    // and a bit per type that has at least one instance
+    private Component[] slots;
+    private int[] counts;
+    private final Bits types;
+
     public Entity() {
         this.components = new ArrayList<>();
+        this.slots = new Component[World.initial_component_types];
+        this.counts = new int[World.initial_component_types];
+        this.types = new Bits();
         reset();
     }
 
     @Override
     public void reset() {
-        this.position = Point.zero();
+        this.position = ownPosition;
+        this.position.set(0, 0);
         this.world = null;
         this.components.clear();
+        Arrays.fill(this.slots, null);
+        Arrays.fill(this.counts, 0);
+        this.types.clear();
         this.active = true;
         this.visible = true;
     }
@@ -31,6 +61,10 @@ public class Entity extends ListNode<Entity> {
         return world;
     }
 
+    public long handle() {
+        return handle;
+    }
+
     public List<Component> components() {
         return components;
     }
@@ -44,16 +78,92 @@ public class Entity extends ListNode<Entity> {
         return world.add(this, component, clazz);
     }
 
+    public <T extends Component> T add(Class<T> clazz, Component.Initializer<T> initializer) {
+        assert(world != null) : "Entity must be assigned to a World";
+        return world.add(this, clazz, initializer);
+    }
+
     public <T extends Component> T get(Class<T> clazz) {
         assert(world != null) : "Entity must be assigned to a World";
-        for (Component component : components) {
-            if (component.type == Component.Types.id(clazz)) {
-                // note: can't use Class.cast() in gwt
-//                return clazz.cast(component);
-                return (T) (component);
+        // note: can't use Class.cast() in gwt
+//        return clazz.cast(get(Component.Types.id(clazz)));
+        return (T) (get(Component.Types.id(clazz)));
+    }
+
+    public Component get(int type) {
+        return (type < slots.length) ? slots[type] : null;
+    }
+
+    public <T extends Component> boolean has(Class<T> clazz) {
+        return has(Component.Types.id(clazz));
+    }
+
+    public boolean has(int type) {
+        return types.get(type);
+    }
+
+    public <T extends Component> int count(Class<T> clazz) {
+        return count(Component.Types.id(clazz));
+    }
+
+    public int count(int type) {
+        return (type < counts.length) ? counts[type] : 0;
+    }
+
+    public <T extends Component> List<T> getAll(Class<T> clazz, List<T> out) {
+        int type = Component.Types.id(clazz);
+        if (count(type) == 1) {
+            out.add((T) slots[type]);
+        } else if (count(type) > 1) {
+            for (Component component : components) {
+                if (component.type == type) {
+                    out.add((T) component);
+                }
+            }
+        }
+        return out;
+    }
+
+    public Bits types() {
+        return types;
+    }
+
+    void attach(Component component) {
+        int type = component.type;
+        if (type >= slots.length) {
+            int capacity = slots.length;
+            while (capacity <= type) capacity *= 2;
+            slots = Arrays.copyOf(slots, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        components.add(component);
+        if (counts[type]++ == 0) {
+            slots[type] = component;
+            types.set(type);
+        }
+    }
+
+    void detach(Component component) {
+        int type = component.type;
+        for (int i = components.size() - 1; i >= 0; i--) {
+            if (components.get(i) == component) {
+                components.remove(i);
+                break;
+            }
+        }
+
+        if (--counts[type] == 0) {
+            slots[type] = null;
+            types.clear(type);
+        } else if (slots[type] == component) {
+            // promote the next instance of this type, in the order they were added
+            for (Component other : components) {
+                if (other.type == type) {
+                    slots[type] = other;
+                    break;
+                }
             }
         }
-        return null;
     }
 
 }
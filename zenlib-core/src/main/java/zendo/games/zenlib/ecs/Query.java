@@ -0,0 +1,114 @@
+package zendo.games.zenlib.ecs;
+
+import com.badlogic.gdx.utils.Bits;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The set of entities in a World that have at least one of every component type in a signature.
+ *
+ * Queries are created and cached by {@link World#query(Class[])} and kept up to date
+ * as components are added and destroyed, so reading one never rescans the world.
+ * The iterator is reused, so iterating does not allocate, but the same query
+ * can't be iterated in nested loops; use size() and get(i) for that.
+ * Membership changes swap entities around, so avoid adding or destroying
+ * matching components while iterating, or walk the query backwards by index.
+ */
+public class Query implements Iterable<Entity> {
+
+    final Bits mask;
+
+    private Entity[] entities;
+    private int size;
+
+    // entity index -> position in entities, -1 when not a member
+    private int[] sparse;
+
+    private final QueryIterator iterator;
+
+    Query(Bits mask) {
+        this.mask = mask;
+        this.entities = new Entity[16];
+        this.sparse = new int[16];
+        this.iterator = new QueryIterator();
+        Arrays.fill(sparse, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Entity get(int index) {
+        return entities[index];
+    }
+
+    public boolean contains(Entity entity) {
+        return entity.index >= 0 && entity.index < sparse.length && sparse[entity.index] >= 0;
+    }
+
+    public boolean matches(Entity entity) {
+        return entity.types().containsAll(mask);
+    }
+
+    @Override
+    public Iterator<Entity> iterator() {
+        iterator.index = 0;
+        return iterator;
+    }
+
+    // called whenever the component types on an entity change
+    void refresh(Entity entity) {
+        boolean member = contains(entity);
+        boolean matches = entity.world != null && matches(entity);
+        if (matches && !member) {
+            insert(entity);
+        } else if (!matches && member) {
+            remove(entity);
+        }
+    }
+
+    private void insert(Entity entity) {
+        if (entity.index >= sparse.length) {
+            int capacity = sparse.length;
+            while (capacity <= entity.index) capacity *= 2;
+            int[] resized = new int[capacity];
+            System.arraycopy(sparse, 0, resized, 0, sparse.length);
+            Arrays.fill(resized, sparse.length, capacity, -1);
+            sparse = resized;
+        }
+        if (size == entities.length) {
+            Entity[] resized = new Entity[entities.length * 2];
+            System.arraycopy(entities, 0, resized, 0, size);
+            entities = resized;
+        }
+        sparse[entity.index] = size;
+        entities[size++] = entity;
+    }
+
+    private void remove(Entity entity) {
+        int position = sparse[entity.index];
+        Entity last = entities[--size];
+        entities[position] = last;
+        sparse[last.index] = position;
+        entities[size] = null;
+        sparse[entity.index] = -1;
+    }
+
+    private class QueryIterator implements Iterator<Entity> {
+        int index;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public Entity next() {
+            if (index >= size) throw new NoSuchElementException();
+            return entities[index++];
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package zendo.games.zenlib.ecs;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Every live component in a World, kept sorted by depth between frames.
+ *
+ * Components that were added earlier stay in front of later ones at the same depth,
+ * so the order is stable. Adding and removing are constant time so spawning and despawning
+ * lots of things per frame stays cheap: added components wait in a pending list, and removed
+ * ones leave a dead slot behind. Each call to sort() closes up the dead slots, takes out the
+ * components whose depth changed since they were placed, and merges those and the pending ones
+ * back in, all in one pass over the list.
+ */
+class RenderList {
+
+    // past this fraction of components to place a full (stable) sort is cheaper than merging them in
+    private static final int full_sort_divisor = 8;
+
+    private static final Comparator<Component> by_depth = new Comparator<Component>() {
+        @Override
+        public int compare(Component a, Component b) {
+            if (a.sortedDepth != b.sortedDepth) return (a.sortedDepth < b.sortedDepth) ? -1 : 1;
+            return Long.compare(a.sortedOrder, b.sortedOrder);
+        }
+    };
+
+    // sorted, except for dead slots between a remove() and the next sort()
+    Component[] items;
+    int size;
+    private boolean[] dead;
+
+    // components added since the last sort, with null for the ones removed again before it
+    private Component[] pending;
+    private int pendingCount;
+    private int pendingRemoved;
+
+    private long order;
+    private int resorts;
+
+    RenderList() {
+        items = new Component[64];
+        dead = new boolean[64];
+        pending = new Component[16];
+    }
+
+    // how many components were moved because their depth changed, during the last call to sort()
+    int resorts() {
+        return resorts;
+    }
+
+    void insert(Component component) {
+        component.sortedDepth = component.depth;
+        component.sortedOrder = order++;
+        addPending(component);
+    }
+
+    void remove(Component component) {
+        int index = component.renderIndex;
+        if (index == -1) return;
+        component.renderIndex = -1;
+
+        if (index >= 0) {
+            dead[index] = true;
+            return;
+        }
+
+        index = -(index + 2);
+        pending[index] = null;
+        if (index == pendingCount - 1) {
+            // the usual case for something that's spawned and despawned right away
+            pendingCount--;
+            while (pendingCount > 0 && pending[pendingCount - 1] == null) {
+                pendingCount--;
+                pendingRemoved--;
+            }
+        } else if (++pendingRemoved > pendingCount / 2) {
+            compactPending();
+        }
+    }
+
+    void sort() {
+        // close up the dead slots, and take out everything whose depth changed since it was placed
+        int count = 0;
+        int moved = 0;
+        for (int i = 0; i < size; i++) {
+            Component component = items[i];
+            if (dead[i]) {
+                dead[i] = false;
+            } else if (component.depth != component.sortedDepth) {
+                component.sortedDepth = component.depth;
+                addPending(component);
+                moved++;
+            } else {
+                items[count] = component;
+                component.renderIndex = count;
+                count++;
+            }
+        }
+        Arrays.fill(items, count, size, null);
+        size = count;
+        resorts = moved;
+
+        if (pendingRemoved > 0) {
+            compactPending();
+        }
+        if (pendingCount == 0) return;
+
+        // ones added since the last sort may have changed depth already
+        for (int i = 0; i < pendingCount; i++) {
+            pending[i].sortedDepth = pending[i].depth;
+        }
+
+        int total = size + pendingCount;
+        if (total > items.length) {
+            int capacity = Math.max(items.length * 2, total);
+            items = Arrays.copyOf(items, capacity);
+            dead = Arrays.copyOf(dead, capacity);
+        }
+
+        if (pendingCount > size / full_sort_divisor) {
+            System.arraycopy(pending, 0, items, size, pendingCount);
+            Arrays.sort(items, 0, total, by_depth);
+        } else {
+            // merge from the back, the pending ones are few enough to sort on their own
+            Arrays.sort(pending, 0, pendingCount, by_depth);
+            int i = size - 1;
+            int j = pendingCount - 1;
+            for (int at = total - 1; j >= 0; at--) {
+                if (i >= 0 && by_depth.compare(items[i], pending[j]) > 0) {
+                    items[at] = items[i--];
+                } else {
+                    items[at] = pending[j--];
+                }
+            }
+        }
+        size = total;
+        for (int i = 0; i < size; i++) {
+            items[i].renderIndex = i;
+        }
+        Arrays.fill(pending, 0, pendingCount, null);
+        pendingCount = 0;
+    }
+
+    private void addPending(Component component) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        component.renderIndex = -(pendingCount + 2);
+        pending[pendingCount++] = component;
+    }
+
+    private void compactPending() {
+        int count = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            Component component = pending[i];
+            if (component != null) {
+                pending[count] = component;
+                component.renderIndex = -(count + 2);
+                count++;
+            }
+        }
+        Arrays.fill(pending, count, pendingCount, null);
+        pendingCount = count;
+        pendingRemoved = 0;
+    }
+
+}
@@ -1,17 +1,23 @@
 package zendo.games.zenlib.ecs;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Bits;
 import com.badlogic.gdx.utils.reflect.ClassReflection;
 import com.badlogic.gdx.utils.reflect.ReflectionException;
+import zendo.games.zenlib.components.Collisions;
+import zendo.games.zenlib.components.TileJournal;
 import zendo.games.zenlib.utils.Point;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 
 public class World {
 
-    static final int max_component_types = 256;
+    static final int initial_component_types = 32;
+
+    // never issued, live entities always have an odd generation
+    public static final long null_handle = 0;
 
     static class Pool<T extends ListNode<T>> {
         public T first = null;
@@ -42,18 +48,38 @@ public class World {
         }
     }
 
+    /**
+     * Runs the update for every instance of a component type that implements {@link Component.ParallelSafe}.
+     * Implementations must not return until every component in the store has been updated.
+     */
+    public interface Updater {
+        void update(ComponentStore store, float dt);
+    }
+
     private final Pool<Entity> entitiesCache;
     private final Pool<Entity> entitiesAlive;
-    private final Pool<Component>[] componentsCache;
-    private final Pool<Component>[] componentsAlive;
-    private final List<Component> componentsVisible;
+    private ComponentStore[] components;
+    private final RenderList componentsRendered;
+    private final List<Query> queries;
+    private int entityCount;
+    private Entity[] entitiesByIndex;
+    private int[] generations;
+    private Updater parallelUpdater;
+    private boolean updatingInParallel;
+    private final CommandBuffer commands;
+    private boolean deferring;
+    private Collisions collisions;
+    private TileJournal journal;
 
     public World() {
         entitiesCache = new Pool<>();
         entitiesAlive = new Pool<>();
-        componentsCache = new Pool[max_component_types];
-        componentsAlive = new Pool[max_component_types];
-        componentsVisible = new ArrayList<>();
+        components = new ComponentStore[initial_component_types];
+        componentsRendered = new RenderList();
+        queries = new ArrayList<>();
+        commands = new CommandBuffer();
+        entitiesByIndex = new Entity[64];
+        generations = new int[64];
     }
 
     public Entity firstEntity() {
@@ -65,47 +91,154 @@ public class World {
     }
 
     public <T extends Component> T first(Class<T> clazz) {
-        int type = Component.Types.id(clazz);
-        if (componentsAlive[type] == null) {
+        ComponentStore store = store(clazz);
+        if (store == null) {
             return null;
         }
         // note: can't use Class.cast() in gwt
-//        return clazz.cast(componentsAlive[type].first);
-        return (T) (componentsAlive[type].first);
+//        return clazz.cast(store.first());
+        return (T) (store.first());
     }
 
     public <T extends Component> T last(Class<T> clazz) {
-        int type = Component.Types.id(clazz);
-        if (componentsAlive[type] == null) {
+        ComponentStore store = store(clazz);
+        if (store == null) {
             return null;
         }
         // note: can't use Class.cast() in gwt
-//        return clazz.cast(componentsAlive[type].last);
-        return (T) (componentsAlive[type].last);
+//        return clazz.cast(store.last());
+        return (T) (store.last());
+    }
+
+    /**
+     * The collision broadphase for this world, created the first time it's asked for
+     */
+    public Collisions collisions() {
+        if (collisions == null) {
+            collisions = new Collisions(this);
+        }
+        return collisions;
+    }
+
+    /**
+     * The cells changed in this world's tilemaps and grids, flushed to its listeners at the end of each update,
+     * created the first time it's asked for
+     */
+    public TileJournal journal() {
+        if (journal == null) {
+            journal = new TileJournal();
+        }
+        return journal;
+    }
+
+    public ComponentStore store(Class<? extends Component> clazz) {
+        return store(Component.Types.id(clazz));
+    }
+
+    public ComponentStore store(int type) {
+        return (type < components.length) ? components[type] : null;
+    }
+
+    /**
+     * Use a factory to construct new instances of a component type when its pool is empty,
+     * instead of reflection
+     */
+    public <T extends Component> void register(Class<T> clazz, Component.Factory<T> factory) {
+        storeFor(Component.Types.id(clazz)).factory = factory;
+    }
+
+    /**
+     * Make sure at least count instances of a component type are pooled and ready to be added
+     */
+    public <T extends Component> void reserve(Class<T> clazz, int count) {
+        ComponentStore store = storeFor(Component.Types.id(clazz));
+        for (int i = store.cached(); i < count; i++) {
+            store.free(create(store, clazz));
+        }
     }
 
     public <T extends Component> T add(Entity entity, T component, Class<T> clazz) {
         assert(entity != null) : "Entity cannot be null";
         assert(entity.world == this) : "Entity must be part of this world";
+        assert(!updatingInParallel) : "Components can't be added during a parallel update";
+
+        // get a pooled or new instance
+        ComponentStore store = storeFor(Component.Types.id(clazz));
+        T instance = obtain(store, clazz);
+
+        // construct the new instance
+        instance.copyFrom(component);
+        instance.type = store.type;
+        instance.entity = entity;
+
+        return add(store, instance);
+    }
+
+    /**
+     * Add a component without a prototype to copy from:
+     * a pooled (or newly created) instance is reset and then handed to the initializer to set up in place
+     */
+    public <T extends Component> T add(Entity entity, Class<T> clazz, Component.Initializer<T> initializer) {
+        assert(entity != null) : "Entity cannot be null";
+        assert(entity.world == this) : "Entity must be part of this world";
+        assert(!updatingInParallel) : "Components can't be added during a parallel update";
+
+        // get a pooled or new instance
+        ComponentStore store = storeFor(Component.Types.id(clazz));
+        T instance = obtain(store, clazz);
+
+        // construct the new instance
+        instance.reset();
+        instance.type = store.type;
+        instance.entity = entity;
+        if (initializer != null) {
+            initializer.init(instance);
+        }
+
+        return add(store, instance);
+    }
+
+    private <T extends Component> T add(ComponentStore store, T instance) {
+        store.parallel = (instance instanceof Component.ParallelSafe);
 
-        // get the component type
-        int type = Component.Types.id(clazz);
-        if (componentsCache[type] == null) {
-            componentsCache[type] = new Pool<>();
+        // while updating, the instance joins the world when the update is done
+        if (deferring) {
+            commands.push(CommandBuffer.add_component, instance);
+        } else {
+            insert(instance);
         }
-        if (componentsAlive[type] == null) {
-            componentsAlive[type] = new Pool<>();
+
+        return instance;
+    }
+
+    private ComponentStore storeFor(int type) {
+        if (type >= components.length) {
+            int capacity = components.length;
+            while (capacity <= type) capacity *= 2;
+            components = Arrays.copyOf(components, capacity);
+        }
+        if (components[type] == null) {
+            components[type] = new ComponentStore(type);
+        }
+        return components[type];
+    }
+
+    private <T extends Component> T obtain(ComponentStore store, Class<T> clazz) {
+        // note: can't use Class.cast() in gwt
+//        T instance = clazz.cast(store.obtain());
+        T instance = (T) (store.obtain());
+        if (instance != null) {
+            store.reused++;
+        } else {
+            instance = create(store, clazz);
         }
-        Pool<Component> cache = componentsCache[type];
-        Pool<Component> alive = componentsAlive[type];
+        return instance;
+    }
 
-        // instantiate a new instance
+    private <T extends Component> T create(ComponentStore store, Class<T> clazz) {
         T instance = null;
-        if (cache.first != null) {
-            // note: can't use Class.cast() in gwt
-//            instance = clazz.cast(cache.first);
-            instance = (T) (cache.first);
-            cache.remove(instance);
+        if (store.factory != null) {
+            instance = (T) (store.factory.create());
         } else {
             try {
                 instance = ClassReflection.newInstance(clazz);
@@ -114,25 +247,82 @@ public class World {
             }
         }
         assert(instance != null) : "Component instance was could not be instantiated";
+        store.created++;
+        return instance;
+    }
 
-        // construct the new instance
-        instance.copyFrom(component);
-        instance.type = type;
-        instance.entity = entity;
+    private void insert(Component instance) {
+        ComponentStore store = components[instance.type];
+
+        // the entity was destroyed before a deferred add was applied
+        if (instance.entity.world != this) {
+            store.free(instance);
+            return;
+        }
 
         // add it to the live components;
-        alive.insert(instance);
+        store.insert(instance);
+        componentsRendered.insert(instance);
 
         // add it to the entity
-        entity.components.add(instance);
+        instance.entity.attach(instance);
+        refreshQueries(instance.entity, instance.type);
 
-        return instance;
+        instance.awake();
+    }
+
+    /**
+     * Get the entities that have every one of the given component types.
+     * Queries are cached by signature and updated as components come and go,
+     * so hold on to the result rather than calling this every frame.
+     */
+    @SafeVarargs
+    public final Query query(Class<? extends Component>... types) {
+        assert(types.length > 0) : "Query needs at least one component type";
+        Bits mask = new Bits();
+        for (Class<? extends Component> type : types) {
+            mask.set(Component.Types.id(type));
+        }
+
+        for (Query query : queries) {
+            if (query.mask.equals(mask)) {
+                return query;
+            }
+        }
+
+        Query query = new Query(mask);
+        Entity entity = firstEntity();
+        while (entity != null) {
+            query.refresh(entity);
+            entity = entity.next();
+        }
+        queries.add(query);
+        return query;
+    }
+
+    private void refreshQueries(Entity entity, int type) {
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            if (query.mask.get(type)) {
+                query.refresh(entity);
+            }
+        }
     }
 
     public Entity addEntity() {
-        return addEntity(Point.zero());
+        return addEntity(0, 0);
     }
 
+    public Entity addEntity(int x, int y) {
+        Entity instance = addEntity(null);
+        instance.position.set(x, y);
+        return instance;
+    }
+
+    /**
+     * Add an entity that uses the given Point as its position, not a copy of it,
+     * or its own reused Point if position is null, see {@link Entity#position}
+     */
     public Entity addEntity(Point position) {
         // create entity instance
         Entity instance;
@@ -142,19 +332,37 @@ public class World {
             instance.reset();
         } else {
             instance = new Entity();
+            instance.index = entityCount++;
+            if (instance.index == generations.length) {
+                generations = Arrays.copyOf(generations, generations.length * 2);
+                entitiesByIndex = Arrays.copyOf(entitiesByIndex, entitiesByIndex.length * 2);
+            }
+            entitiesByIndex[instance.index] = instance;
         }
 
+        // a live entity always has an odd generation
+        instance.handle = handle(instance.index, ++generations[instance.index]);
+
         // add to list
         entitiesAlive.insert(instance);
 
         // assign
-        instance.position = position;
-        instance.world    = this;
+        if (position != null) {
+            instance.position = position;
+        }
+        instance.world = this;
 
         return instance;
     }
 
     public void destroyEntity(Entity entity) {
+        if (deferring) {
+            if (entity != null && entity.world == this) {
+                commands.push(CommandBuffer.destroy_entity, entity);
+            }
+            return;
+        }
+
         if (entity != null && entity.world == this) {
             // destroy components
             for (int i = entity.components.size() - 1; i >= 0; i--) {
@@ -166,29 +374,98 @@ public class World {
             entitiesCache.insert(entity);
 
             entity.world = null;
+            generations[entity.index]++;
         }
     }
 
+    /**
+     * Get the entity a handle was issued for, or null if that entity has since been destroyed.
+     * Handles stay unique across entity recycling, so it's safe to hold on to them
+     * where holding on to an Entity reference is not.
+     */
+    public Entity resolve(long handle) {
+        return isAlive(handle) ? entitiesByIndex[(int) handle] : null;
+    }
+
+    public boolean isAlive(long handle) {
+        int index = (int) handle;
+        int generation = (int) (handle >>> 32);
+        return index >= 0 && index < entityCount && generations[index] == generation;
+    }
+
+    // generation in the high bits, index in the low bits
+    private static long handle(int index, int generation) {
+        return ((long) generation << 32) | (index & 0xFFFFFFFFL);
+    }
+
     public void destroy(Component component) {
+        assert(!updatingInParallel) : "Components can't be destroyed during a parallel update";
+        if (deferring) {
+            if (component != null && component.entity != null && component.entity.world == this) {
+                commands.push(CommandBuffer.destroy_component, component);
+            }
+            return;
+        }
+
         if (component != null && component.entity != null && component.entity.world == this) {
-            int type = component.type;
+            ComponentStore store = store(component.type);
+            if (store == null || !store.contains(component)) return;
 
             // mark destroyed
             component.destroyed();
 
             // remove from entity
-            List<Component> list = component.entity.components;
-            for (int i = list.size() - 1; i >= 0; i--) {
-                if (list.get(i) == component) {
-                    list.remove(i);
-                    break;
-                }
-            }
+            component.entity.detach(component);
+            refreshQueries(component.entity, component.type);
+
+            // remove from the live components, the store holds on to it for reuse
+            store.remove(component);
+            componentsRendered.remove(component);
+        }
+    }
+
+    public void setActive(Component component, boolean active) {
+        if (deferring) {
+            commands.push(active ? CommandBuffer.activate : CommandBuffer.deactivate, component);
+        } else {
+            component.active = active;
+        }
+    }
 
-            // remove from list
-            componentsAlive[type].remove(component);
-            componentsCache[type].insert(component);
+    public void setActive(Entity entity, boolean active) {
+        if (deferring) {
+            commands.push(active ? CommandBuffer.activate : CommandBuffer.deactivate, entity);
+        } else {
+            entity.active = active;
+        }
+    }
+
+    /**
+     * Whether structural changes are currently being recorded rather than applied,
+     * which is the case for the duration of {@link #update(float)}
+     */
+    public boolean isDeferring() {
+        return deferring;
+    }
+
+    // the sync point: apply everything recorded during the update, in the order it was recorded
+    private void flush() {
+        deferring = false;
+        for (int i = 0; i < commands.count; i++) {
+            Object target = commands.targets[i];
+            switch (commands.ops[i]) {
+                case CommandBuffer.add_component:     insert((Component) target); break;
+                case CommandBuffer.destroy_component: destroy((Component) target); break;
+                case CommandBuffer.destroy_entity:    destroyEntity((Entity) target); break;
+                case CommandBuffer.activate:
+                case CommandBuffer.deactivate: {
+                    boolean active = (commands.ops[i] == CommandBuffer.activate);
+                    if (target instanceof Entity) ((Entity) target).active = active;
+                    else                          ((Component) target).active = active;
+                } break;
+            }
         }
+        commands.clear();
     }
 
     public void clear() {
@@ -200,50 +477,74 @@ public class World {
         }
     }
 
+    /**
+     * Set the updater used for component types that implement {@link Component.ParallelSafe},
+     * or null to update everything sequentially on the calling thread (the default).
+     * Types are still updated one after another in type order, only the instances
+     * of an opted in type are split up, and the next type starts once they're all done.
+     */
+    public void setParallelUpdater(Updater updater) {
+        this.parallelUpdater = updater;
+    }
+
     public void update(float dt) {
-        for (int i = 0; i < Component.Types.count(); i++) {
-            if (componentsAlive[i] == null) continue;
-            Component component = componentsAlive[i].first;
-            while (component != null) {
-                Component next = component.next();
-                if (component.active && component.entity.active) {
-                    component.update(dt);
-                }
-                component = next;
+        // adding and destroying during the update is recorded and applied at the end,
+        // so the stores aren't reshuffled while they're being walked
+        deferring = true;
+        try {
+            // pick up anything that was moved around outside of a Mover and find the contact pairs
+            if (collisions != null) {
+                collisions.step();
             }
-        }
-    }
 
-    public void render(SpriteBatch batch) {
-        // Notes:
-        // In general this isn't a great way to render objects
-        // Every frame it has to rebuild the list and sort it
-        // A more ideal way would be to cache the visible list
-        // and insert / remove objects as they update or change
-        // their depth
-
-        // assemble list
-        for (int i = 0; i < Component.Types.count(); i++) {
-            if (componentsAlive[i] == null) continue;
-            Component component = componentsAlive[i].first;
-            while (component != null) {
-                if (component.visible && component.entity.visible) {
-                    componentsVisible.add(component);
+            for (int i = 0; i < components.length; i++) {
+                ComponentStore store = components[i];
+                if (store == null) continue;
+
+                if (store.parallel && parallelUpdater != null) {
+                    updatingInParallel = true;
+                    try {
+                        parallelUpdater.update(store, dt);
+                    } finally {
+                        updatingInParallel = false;
+                    }
+                    continue;
+                }
+
+                for (int j = 0; j < store.size; j++) {
+                    Component component = store.dense[j];
+                    if (component.active && component.entity.active) {
+                        component.update(dt);
+                    }
                 }
-                component = component.next();
             }
+        } finally {
+            flush();
         }
 
-        // sort by depth
-        componentsVisible.sort(Comparator.comparingInt(Component::depth));
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    public void render(SpriteBatch batch) {
+        // move anything whose depth changed since last frame
+        componentsRendered.sort();
 
         // render them
-        for (Component component : componentsVisible) {
-            component.render(batch);
+        for (int i = 0; i < componentsRendered.size; i++) {
+            Component component = componentsRendered.items[i];
+            if (component.visible && component.entity.visible) {
+                component.render(batch);
+            }
         }
+    }
 
-        // clear the list for next time around
-        componentsVisible.clear();
+    /**
+     * The number of components whose depth changed and had to be moved in the render order during the last render
+     */
+    public int renderResorts() {
+        return componentsRendered.resorts();
     }
 
 }
@@ -0,0 +1,90 @@
+package zendo.games.zenlib.components;
+
+import org.junit.jupiter.api.Test;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Grid vs grid overlaps, word by word or spread across tile sizes, have to agree with comparing every pair of cells
+ */
+class ColliderGridTest {
+
+    @Test
+    void gridOverlapsMatchBruteForce() {
+        Random random = new Random(11);
+        for (int test = 0; test < 12000; test++) {
+            World world = new World();
+
+            boolean sameTileSize = random.nextBoolean();
+            int tileSizeA = 2 + random.nextInt(14);
+            int tileSizeB = sameTileSize ? tileSizeA : 2 + random.nextInt(14);
+            Collider a = world.addEntity(random.nextInt(400) - 100, random.nextInt(100) - 50)
+                    .add(Collider.makeGrid(tileSizeA, 1 + random.nextInt(150), 1 + random.nextInt(6)), Collider.class);
+            Collider b = world.addEntity(random.nextInt(40) - 20, random.nextInt(40) - 20)
+                    .add(Collider.makeGrid(tileSizeB, 1 + random.nextInt(150), 1 + random.nextInt(6)), Collider.class);
+
+            // lined up on whole tiles as well as at any offset
+            if (sameTileSize && random.nextBoolean()) {
+                a.entity().position.set(tileSizeA * (random.nextInt(40) - 10), tileSizeA * (random.nextInt(6) - 2));
+                b.entity().position.set(0, 0);
+            }
+            b.setMask(Mask.solid);
+
+            for (Collider collider : new Collider[] { a, b }) {
+                Collider.Grid grid = collider.getGrid();
+                int fill = 1 + random.nextInt(Math.max(1, grid.columns * grid.rows / 8));
+                for (int i = 0; i < fill; i++) {
+                    grid.set(random.nextInt(grid.columns), random.nextInt(grid.rows), true);
+                }
+            }
+
+            for (int k = 0; k < 5; k++) {
+                int dx = random.nextInt(9) - 4;
+                int dy = random.nextInt(9) - 4;
+                if (sameTileSize && random.nextBoolean()) {
+                    dx = 0;
+                    dy = 0;
+                }
+
+                boolean expected = bruteForce(a, b, dx, dy);
+                String at = "test " + test + " offset " + dx + "," + dy;
+                assertEquals(expected, a.overlaps(b, dx, dy), at + " a overlaps b");
+                assertEquals(expected, b.overlaps(a, -dx, -dy), at + " b overlaps a");
+                assertEquals(expected, a.check(Mask.solid, dx, dy), at + " check");
+            }
+        }
+    }
+
+    private static boolean bruteForce(Collider a, Collider b, int dx, int dy) {
+        Collider.Grid gridA = a.getGrid();
+        Collider.Grid gridB = b.getGrid();
+        int ax = a.entity().position.x + a.origin.x + dx;
+        int ay = a.entity().position.y + a.origin.y + dy;
+        int bx = b.entity().position.x + b.origin.x;
+        int by = b.entity().position.y + b.origin.y;
+        for (int rowA = 0; rowA < gridA.rows; rowA++) {
+            for (int columnA = 0; columnA < gridA.columns; columnA++) {
+                if (!gridA.get(columnA, rowA)) continue;
+                int x1 = ax + columnA * gridA.tileSize;
+                int y1 = ay + rowA * gridA.tileSize;
+                for (int rowB = 0; rowB < gridB.rows; rowB++) {
+                    for (int columnB = 0; columnB < gridB.columns; columnB++) {
+                        if (!gridB.get(columnB, rowB)) continue;
+                        int x2 = bx + columnB * gridB.tileSize;
+                        int y2 = by + rowB * gridB.tileSize;
+                        if (x1 < x2 + gridB.tileSize && x2 < x1 + gridA.tileSize
+                         && y1 < y2 + gridB.tileSize && y2 < y1 + gridA.tileSize) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,72 @@
+package zendo.games.zenlib.components;
+
+import org.junit.jupiter.api.Test;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.RectI;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Once a world has warmed up, updating movers and hurtables against a level shouldn't allocate anything
+ */
+class CollisionsAllocationTest {
+
+    @Test
+    void updateDoesNotAllocate() {
+        World world = new World();
+        Random random = new Random(1);
+
+        Collider level = world.addEntity(0, 0).add(Collider.makeGrid(16, 64, 32), Collider.class);
+        level.setMask(Mask.solid);
+        for (int x = 0; x < 64; x++) {
+            level.setCell(x, 0, true);
+        }
+        for (int y = 0; y < 32; y++) {
+            level.setCell(0, y, true);
+            level.setCell(63, y, true);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            Collider obstacle = world.addEntity(16 + random.nextInt(992), 16 + random.nextInt(480))
+                    .add(Collider.makeRect(RectI.at(0, 0, 12, 12)), Collider.class);
+            obstacle.setMask((i % 4 == 0) ? Mask.solid : Mask.enemy);
+        }
+
+        Mover.OnHit turnAround = mover -> mover.speed.x = -mover.speed.x;
+        Hurtable.OnHurt ignore = hurtable -> hurtable.stunTimer = 0;
+        for (int i = 0; i < 200; i++) {
+            Entity walker = world.addEntity(20 + random.nextInt(980), 256);
+            Collider body = walker.add(Collider.makeRect(RectI.at(0, 0, 8, 12)), Collider.class);
+            Mover mover = walker.add(new Mover(), Mover.class);
+            mover.collider = body;
+            mover.gravity = -400;
+            mover.speed.x = (i % 2 == 0) ? 80 : -80;
+            mover.onHitX = turnAround;
+            Hurtable hurtable = walker.add(new Hurtable(), Hurtable.class);
+            hurtable.collider = body;
+            hurtable.onHurt = ignore;
+            hurtable.setHurtBy(Mask.enemy);
+        }
+
+        // let the pools, contact buffers and hash cells grow to their working size
+        for (int i = 0; i < 5000; i++) {
+            world.update(1 / 60f);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1000; i++) {
+            world.update(1 / 60f);
+        }
+        long after = threads.getThreadAllocatedBytes(thread);
+
+        assertEquals(0, after - before, "bytes allocated over 1000 updates");
+    }
+
+}
@@ -0,0 +1,226 @@
+package zendo.games.zenlib.components;
+
+import org.junit.jupiter.api.Test;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The pairs and begin, stay and end events published each step have to match checking every pair of colliders
+ */
+class ContactsTest {
+
+    @Test
+    void eventsMatchBruteForce() {
+        World world = new World();
+        Random random = new Random(9);
+
+        List<Collider> colliders = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            Collider collider = world.addEntity(random.nextInt(600), random.nextInt(600))
+                    .add(Collider.makeRect(RectI.at(0, 0, 5 + random.nextInt(20), 5 + random.nextInt(20))), Collider.class);
+            collider.setMask(random.nextBoolean() ? Mask.enemy : Mask.player_attack);
+            colliders.add(collider);
+        }
+
+        Contacts contacts = world.collisions().contacts();
+        int attacks = contacts.watch(Mask.player_attack, Mask.enemy);
+        int enemies = contacts.watch(Mask.enemy, Mask.enemy);
+
+        Set<Pair> previous = new HashSet<>();
+        for (int frame = 0; frame < 40; frame++) {
+            // move some around, destroy some and add some more
+            for (int k = 0; k < 30; k++) {
+                colliders.get(random.nextInt(colliders.size())).entity().position.add(random.nextInt(21) - 10, random.nextInt(21) - 10);
+            }
+            for (int k = 0; k < 5; k++) {
+                world.destroyEntity(colliders.remove(random.nextInt(colliders.size())).entity());
+            }
+            for (int k = 0; k < 5; k++) {
+                Collider collider = world.addEntity(random.nextInt(600), random.nextInt(600))
+                        .add(Collider.class, c -> c.initRect(0, 0, 10, 10));
+                collider.setMask(Mask.enemy);
+                colliders.add(collider);
+            }
+
+            world.update(1 / 60f);
+
+            Set<Pair> expected = new HashSet<>();
+            for (Collider a : colliders) {
+                for (Collider b : colliders) {
+                    if (a == b || !a.overlaps(b)) continue;
+                    if ((a.mask & Mask.player_attack) == Mask.player_attack && (b.mask & Mask.enemy) == Mask.enemy) {
+                        expected.add(new Pair(attacks, a, b));
+                    }
+                    if ((a.mask & Mask.enemy) == Mask.enemy && (b.mask & Mask.enemy) == Mask.enemy) {
+                        expected.add(new Pair(enemies, a, b));
+                    }
+                }
+            }
+
+            Set<Pair> current = new HashSet<>();
+            Set<Pair> begun = new HashSet<>();
+            Set<Pair> ended = new HashSet<>();
+            for (int event = 0; event < contacts.count(); event++) {
+                Pair pair = new Pair(contacts.watchOf(event), contacts.a(event), contacts.b(event));
+                if (contacts.type(event) == Contacts.end) {
+                    ended.add(pair);
+                } else {
+                    current.add(pair);
+                }
+                if (contacts.type(event) == Contacts.begin) {
+                    begun.add(pair);
+                }
+            }
+
+            Set<Pair> expectedBegun = new HashSet<>(expected);
+            expectedBegun.removeAll(previous);
+            Set<Pair> expectedEnded = new HashSet<>(previous);
+            expectedEnded.removeAll(expected);
+
+            assertEquals(expected, current, "frame " + frame + " pairs");
+            assertEquals(expectedBegun, begun, "frame " + frame + " begins");
+            assertEquals(expectedEnded, ended, "frame " + frame + " ends");
+            assertEquals(expected.size(), contacts.pairs(), "frame " + frame + " pair count");
+
+            // each collider's list has exactly its own begin and stay events
+            for (Collider a : colliders) {
+                int listed = 0;
+                for (int event = contacts.first(a); event >= 0; event = contacts.next(event)) {
+                    assertTrue(contacts.a(event) == a, "frame " + frame + " event in the wrong list");
+                    listed++;
+                }
+                int pairs = 0;
+                for (Pair pair : expected) {
+                    if (pair.a == a) pairs++;
+                }
+                assertEquals(pairs, listed, "frame " + frame + " events listed for a collider");
+            }
+
+            previous = expected;
+        }
+    }
+
+    @Test
+    void hurtableSeesContactsOnItsFirstUpdate() {
+        World world = new World();
+        Collider enemy = world.addEntity(0, 0).add(Collider.makeRect(RectI.at(0, 0, 16, 16)), Collider.class);
+        enemy.setMask(Mask.enemy);
+        world.update(1 / 60f);
+
+        int[] hurts = new int[1];
+        Hurtable hurtable = hurtable(world, 4, 4, hurts);
+
+        world.update(1 / 60f);
+        assertEquals(1, hurts[0], "hurt on the first update");
+
+        // changing the collider's mask doesn't need another watch
+        int watches = world.collisions().contacts().watches();
+        for (int mask = 1; mask < 200; mask++) {
+            hurtable.collider.setMask(mask);
+            world.update(1 / 60f);
+        }
+        assertEquals(watches, world.collisions().contacts().watches(), "watches after mask changes");
+    }
+
+    @Test
+    void hurtableStopsWhenNothingHurtsIt() {
+        World world = new World();
+        Collider enemy = world.addEntity(0, 0).add(Collider.makeRect(RectI.at(0, 0, 16, 16)), Collider.class);
+        enemy.setMask(Mask.enemy);
+
+        int[] cleared = new int[1];
+        int[] assigned = new int[1];
+        Hurtable first = hurtable(world, 4, 4, cleared);
+        Hurtable second = hurtable(world, 4, 4, assigned);
+        world.update(1 / 60f);
+        assertEquals(1, cleared[0], "hurt before clearing");
+        assertEquals(1, assigned[0], "hurt before assigning");
+
+        first.setHurtBy(0);
+        second.hurtBy = 0;
+        // well past the stun time
+        for (int i = 0; i < 120; i++) {
+            world.update(1 / 60f);
+        }
+        assertEquals(1, cleared[0], "hurt after clearing");
+        assertEquals(1, assigned[0], "hurt after assigning");
+        assertEquals(0, world.collisions().contacts().queries(), "colliders queried with nothing watching");
+    }
+
+    @Test
+    void stepWorkScalesWithWatchers() {
+        World world = new World();
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            Collider collider = world.addEntity(random.nextInt(4000), random.nextInt(4000))
+                    .add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+            collider.setMask((i % 2 == 0) ? Mask.enemy : Mask.solid);
+        }
+
+        int[] hurts = new int[1];
+        hurtable(world, random.nextInt(4000), random.nextInt(4000), hurts);
+        world.update(1 / 60f);
+        Contacts contacts = world.collisions().contacts();
+        assertEquals(1, contacts.queries(), "colliders queried for one hurtable");
+        assertTrue(contacts.pairs() <= 4, "pairs found for one hurtable");
+
+        Hurtable last = null;
+        for (int i = 0; i < 9; i++) {
+            last = hurtable(world, random.nextInt(4000), random.nextInt(4000), hurts);
+        }
+        world.update(1 / 60f);
+        assertEquals(10, contacts.queries(), "colliders queried for ten hurtables");
+
+        world.destroyEntity(last.entity());
+        world.update(1 / 60f);
+        assertEquals(9, contacts.queries(), "colliders queried after one was destroyed");
+    }
+
+    private static Hurtable hurtable(World world, int x, int y, int[] hurts) {
+        Entity entity = world.addEntity(x, y);
+        Collider body = entity.add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+        body.setMask(Mask.player_attack);
+        Hurtable hurtable = entity.add(new Hurtable(), Hurtable.class);
+        hurtable.onHurt = h -> hurts[0]++;
+        hurtable.setCollider(body);
+        hurtable.setHurtBy(Mask.enemy);
+        return hurtable;
+    }
+
+    // a pair reported by a watch, the colliders compared by identity since destroyed ones may be pooled again
+    private static class Pair {
+        final int watch;
+        final Collider a;
+        final Collider b;
+
+        Pair(int watch, Collider a, Collider b) {
+            this.watch = watch;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Pair)) return false;
+            Pair pair = (Pair) other;
+            return watch == pair.watch && a == pair.a && b == pair.b;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * watch + System.identityHashCode(a)) + System.identityHashCode(b);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package zendo.games.zenlib.components;
+
+import org.junit.jupiter.api.Test;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Moving with a single cast has to end up exactly where stepping a pixel at a time would
+ */
+class MoverTest {
+
+    @Test
+    void castMatchesPixelSteps() {
+        Random random = new Random(7);
+        for (int scene = 0; scene < 200; scene++) {
+            World world = new World();
+
+            int tileSize = 4 + random.nextInt(13);
+            Collider solid = world.addEntity(random.nextInt(21) - 10, random.nextInt(21) - 10)
+                    .add(Collider.makeGrid(tileSize, 30, 20), Collider.class);
+            solid.origin.set(random.nextInt(5), random.nextInt(5));
+            solid.setMask(Mask.solid);
+            for (int i = 0; i < 60; i++) {
+                solid.setCell(random.nextInt(30), random.nextInt(20), true);
+            }
+
+            Collider platforms = world.addEntity(0, 0).add(Collider.makeGrid(8, 40, 30), Collider.class);
+            platforms.setMask(Mask.jumpthrough);
+            for (int i = 0; i < 30; i++) {
+                platforms.setCell(random.nextInt(40), random.nextInt(30), true);
+            }
+
+            for (int i = 0; i < 40; i++) {
+                Collider rect = world.addEntity(random.nextInt(400) - 50, random.nextInt(300) - 50)
+                        .add(Collider.makeRect(RectI.at(0, 0, 1 + random.nextInt(30), 1 + random.nextInt(30))), Collider.class);
+                rect.setMask(random.nextBoolean() ? Mask.solid : Mask.jumpthrough);
+            }
+
+            Entity entity = world.addEntity(0, 0);
+            Collider body = entity.add(Collider.makeRect(RectI.at(random.nextInt(3), random.nextInt(3), 1 + random.nextInt(14), 1 + random.nextInt(14))), Collider.class);
+            Mover mover = entity.add(new Mover(), Mover.class);
+            mover.collider = body;
+            boolean[] called = new boolean[1];
+            mover.onHitX = m -> called[0] = true;
+            mover.onHitY = m -> called[0] = true;
+
+            for (int move = 0; move < 300; move++) {
+                int startX = random.nextInt(400) - 50;
+                int startY = random.nextInt(300) - 50;
+                int amount = random.nextInt(121) - 60;
+                boolean alongX = random.nextBoolean();
+
+                entity.position.set(startX, startY);
+                body.moved();
+                boolean expectedHit = alongX ? stepX(body, amount) : stepY(body, amount);
+                int expectedX = entity.position.x;
+                int expectedY = entity.position.y;
+
+                entity.position.set(startX, startY);
+                body.moved();
+                called[0] = false;
+                boolean hit = alongX ? mover.moveX(amount) : mover.moveY(amount);
+
+                String at = "scene " + scene + " move " + move;
+                assertEquals(expectedHit, hit, at + " hit");
+                assertEquals(expectedHit, called[0], at + " callback");
+                assertEquals(expectedX, entity.position.x, at + " x");
+                assertEquals(expectedY, entity.position.y, at + " y");
+            }
+        }
+    }
+
+    // how Mover used to move, checking every pixel along the way
+    private static boolean stepX(Collider collider, int amount) {
+        int sign = Integer.signum(amount);
+        while (amount != 0) {
+            if (collider.check(Mask.solid, sign, 0)) {
+                return true;
+            }
+            amount -= sign;
+            collider.entity().position.x += sign;
+        }
+        return false;
+    }
+
+    private static boolean stepY(Collider collider, int amount) {
+        int sign = Integer.signum(amount);
+        while (amount != 0) {
+            boolean hit = collider.check(Mask.solid, 0, sign);
+            if (!hit && sign < 0) {
+                hit = collider.check(Mask.jumpthrough, 0, sign) && !collider.check(Mask.jumpthrough, 0, 0);
+            }
+            if (hit) {
+                return true;
+            }
+            amount -= sign;
+            collider.entity().position.y += sign;
+        }
+        return false;
+    }
+
+}
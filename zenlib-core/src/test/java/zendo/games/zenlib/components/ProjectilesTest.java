@@ -0,0 +1,98 @@
+package zendo.games.zenlib.components;
+
+import org.junit.jupiter.api.Test;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Projectiles have to stop exactly where moving a pixel at a time, along x and then along y, would stop them
+ */
+class ProjectilesTest {
+
+    @Test
+    void diagonalMoveDoesNotCutCorners() {
+        World world = new World();
+        // only the middle of a move from (0, 0) to (4, 4) would touch it
+        Collider corner = world.addEntity(4, 2).add(Collider.makeRect(RectI.at(0, 0, 2, 2)), Collider.class);
+        corner.setMask(Mask.solid);
+
+        Projectiles projectiles = world.addEntity(0, 0).add(new Projectiles(), Projectiles.class);
+        projectiles.width = 4;
+        projectiles.height = 4;
+        projectiles.spawn(0, 0, 240, 240, 7);
+        world.update(1 / 60f);
+
+        assertEquals(1, projectiles.hits(), "hits");
+        assertTrue(projectiles.hitCollider(0) == corner, "hit the corner");
+        assertEquals(0, projectiles.hitX(0), "hit x");
+        assertEquals(0, projectiles.hitY(0), "hit y");
+        assertEquals(7, projectiles.hitTag(0), "hit tag");
+    }
+
+    @Test
+    void movesMatchPixelSteps() {
+        Random random = new Random(5);
+        for (int scene = 0; scene < 100; scene++) {
+            World world = new World();
+            Collider grid = world.addEntity(0, 0).add(Collider.makeGrid(8, 40, 40), Collider.class);
+            grid.setMask(Mask.solid);
+            for (int i = 0; i < 40; i++) {
+                grid.setCell(random.nextInt(40), random.nextInt(40), true);
+            }
+            for (int i = 0; i < 20; i++) {
+                Collider rect = world.addEntity(random.nextInt(320), random.nextInt(320))
+                        .add(Collider.makeRect(RectI.at(0, 0, 1 + random.nextInt(6), 1 + random.nextInt(6))), Collider.class);
+                rect.setMask(Mask.solid);
+            }
+
+            Projectiles projectiles = world.addEntity(0, 0).add(new Projectiles(), Projectiles.class);
+            projectiles.width = 1 + random.nextInt(6);
+            projectiles.height = 1 + random.nextInt(6);
+            Collisions collisions = world.collisions();
+
+            for (int shot = 0; shot < 50; shot++) {
+                int startX = random.nextInt(320);
+                int startY = random.nextInt(320);
+                int moveX = random.nextInt(61) - 30;
+                int moveY = random.nextInt(61) - 30;
+                if (collisions.first(startX, startY, projectiles.width, projectiles.height, Mask.solid) != null) continue;
+
+                // where a pixel at a time would end up
+                int x = startX;
+                int y = startY;
+                Collider expected = null;
+                for (int step = 0; step < Math.abs(moveX) && expected == null; step++) {
+                    expected = collisions.first(x + Integer.signum(moveX), y, projectiles.width, projectiles.height, Mask.solid);
+                    if (expected == null) x += Integer.signum(moveX);
+                }
+                for (int step = 0; step < Math.abs(moveY) && expected == null; step++) {
+                    expected = collisions.first(x, y + Integer.signum(moveY), projectiles.width, projectiles.height, Mask.solid);
+                    if (expected == null) y += Integer.signum(moveY);
+                }
+
+                // a whole number of pixels in one update
+                projectiles.clear();
+                projectiles.spawn(startX, startY, moveX * 60, moveY * 60, shot);
+                world.update(1 / 60f);
+
+                String at = "scene " + scene + " shot " + shot;
+                if (expected != null) {
+                    assertEquals(1, projectiles.hits(), at + " hits");
+                    assertEquals(x, projectiles.hitX(0), at + " hit x");
+                    assertEquals(y, projectiles.hitY(0), at + " hit y");
+                } else {
+                    assertEquals(0, projectiles.hits(), at + " hits");
+                    assertEquals(x, projectiles.x(0), at + " x");
+                    assertEquals(y, projectiles.y(0), at + " y");
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package zendo.games.zenlib.components;
+
+import org.junit.jupiter.api.Test;
+import zendo.games.zenlib.ecs.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks and casts against a mix of static and moving colliders, some of them very wide,
+ * have to agree with testing every collider, as colliders move and switch between static and not
+ */
+class StaticIndexTest {
+
+    @Test
+    void queriesMatchBruteForce() {
+        World world = new World();
+        Random random = new Random(21);
+
+        List<Collider> colliders = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            boolean isStatic = (i % 3 != 0);
+            int width = 1 + random.nextInt((i % 40 == 0) ? 2000 : 40);
+            int height = 1 + random.nextInt(40);
+            int mask = 1 << random.nextInt(3);
+            colliders.add(world.addEntity(random.nextInt(4000) - 2000, random.nextInt(4000) - 2000)
+                    .add(Collider.class, c -> {
+                        c.initRect(0, 0, width, height);
+                        c.mask = mask;
+                        c.setStatic(isStatic);
+                    }));
+        }
+        Collider probe = world.addEntity(0, 0).add(Collider.class, c -> c.initRect(0, 0, 10, 10));
+
+        for (int frame = 0; frame < 10; frame++) {
+            for (int k = 0; k < 50; k++) {
+                Collider collider = colliders.get(random.nextInt(colliders.size()));
+                collider.entity().position.add(random.nextInt(41) - 20, random.nextInt(41) - 20);
+                if (collider.isStatic()) collider.moved();
+            }
+            for (int k = 0; k < 10; k++) {
+                Collider collider = colliders.get(random.nextInt(colliders.size()));
+                collider.setStatic(!collider.isStatic());
+            }
+
+            world.update(1 / 60f);
+
+            for (int k = 0; k < 100; k++) {
+                probe.entity().position.set(random.nextInt(4000) - 2000, random.nextInt(4000) - 2000);
+                probe.moved();
+                int mask = random.nextInt(8);
+                int dx = random.nextInt(7) - 3;
+
+                String at = "frame " + frame + " query " + k;
+                assertEquals(overlapsAny(colliders, probe, mask, dx), probe.check(mask, dx, 0), at + " check");
+
+                int free = 300;
+                for (int step = 1; step <= 300; step++) {
+                    if (overlapsAny(colliders, probe, mask, step)) {
+                        free = step - 1;
+                        break;
+                    }
+                }
+                assertEquals(free, probe.cast(mask, 1, 0, 300), at + " cast");
+            }
+        }
+    }
+
+    private static boolean overlapsAny(List<Collider> colliders, Collider probe, int mask, int dx) {
+        for (Collider collider : colliders) {
+            if ((collider.mask & mask) == mask && probe.overlaps(collider, dx, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,85 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import org.junit.jupiter.api.Test;
+import zendo.games.zenlib.ecs.Entity;
+import zendo.games.zenlib.ecs.World;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cached chunk vertices, checked without a GL context by reading the arrays that would be handed to the batch
+ */
+class TilemapTest {
+
+    @Test
+    void cachedChunksRebuildOnlyWhenTheyChange() {
+        World world = new World();
+        Entity entity = world.addEntity(100, 50);
+        // 40 x 20 cells of 8 pixels, so 3 x 2 chunks
+        Tilemap tilemap = entity.add(Tilemap.class, t -> t.init(8, 40, 20));
+        int grass = tilemap.getTileset().add(region(0.25f, 0.5f, 0.5f, 0.75f));
+        int stone = tilemap.getTileset().add(region(0.5f, 0.5f, 0.75f, 0.75f));
+        tilemap.setTile(0, 0, grass);
+        tilemap.setTile(1, 0, grass);
+        tilemap.setTile(2, 3, stone);
+        tilemap.setTile(20, 5, grass);
+        tilemap.setTile(35, 18, stone);
+        tilemap.setCached(true);
+
+        bakeAll(tilemap);
+        assertEquals(6, tilemap.rebuilds(), "builds for the first bake");
+        assertEquals(3 * Tilemap.floats_per_cell, tilemap.chunkFloats(0, 0), "floats in chunk 0, 0");
+        assertEquals(0, tilemap.chunkFloats(0, 1), "floats in an empty chunk");
+
+        // the third cell of the first chunk is (2, 3), its corners in the order SpriteBatch expects
+        float[] vertices = tilemap.chunkVertices(0, 0);
+        int at = 2 * Tilemap.floats_per_cell;
+        assertCorner(vertices, at,      116, 74, 0.5f,  0.75f);
+        assertCorner(vertices, at + 5,  116, 82, 0.5f,  0.5f);
+        assertCorner(vertices, at + 10, 124, 82, 0.75f, 0.5f);
+        assertCorner(vertices, at + 15, 124, 74, 0.75f, 0.75f);
+
+        // baking again without changes builds nothing
+        bakeAll(tilemap);
+        assertEquals(6, tilemap.rebuilds(), "builds with nothing changed");
+
+        // changing a cell only rebuilds its own chunk
+        tilemap.setTile(20, 5, stone);
+        bakeAll(tilemap);
+        assertEquals(7, tilemap.rebuilds(), "builds after changing one cell");
+        assertCorner(tilemap.chunkVertices(1, 0), 0, 100 + 20 * 8, 50 + 5 * 8, 0.5f, 0.75f);
+
+        // moving the tilemap makes every chunk stale
+        entity.position.set(0, 0);
+        bakeAll(tilemap);
+        assertEquals(13, tilemap.rebuilds(), "builds after moving");
+        assertCorner(tilemap.chunkVertices(2, 1), 0, 35 * 8, 18 * 8, 0.5f, 0.75f);
+    }
+
+    private static void bakeAll(Tilemap tilemap) {
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 3; x++) {
+                tilemap.chunkVertices(x, y);
+            }
+        }
+    }
+
+    private static void assertCorner(float[] vertices, int at, float x, float y, float u, float v) {
+        assertEquals(x, vertices[at], 0, "x at " + at);
+        assertEquals(y, vertices[at + 1], 0, "y at " + at);
+        assertEquals(u, vertices[at + 3], 0, "u at " + at);
+        assertEquals(v, vertices[at + 4], 0, "v at " + at);
+    }
+
+    // a region without a texture, setting its uvs directly would need the texture's size
+    private static TextureRegion region(float u, float v, float u2, float v2) {
+        return new TextureRegion() {
+            @Override public float getU()  { return u; }
+            @Override public float getV()  { return v; }
+            @Override public float getU2() { return u2; }
+            @Override public float getV2() { return v2; }
+        };
+    }
+
+}
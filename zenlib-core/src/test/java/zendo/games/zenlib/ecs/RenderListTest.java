@@ -0,0 +1,68 @@
+package zendo.games.zenlib.ecs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * After each sort the render list has to hold exactly the live components, by depth and then by when they were added,
+ * however many were added, removed, added again from a pool or given a new depth in between
+ */
+class RenderListTest {
+
+    @Test
+    void sortMatchesStableSort() {
+        Random random = new Random(17);
+        RenderList list = new RenderList();
+        List<Component> live = new ArrayList<>();
+        List<Component> pool = new ArrayList<>();
+        List<Long> added = new ArrayList<>();
+        long clock = 0;
+
+        for (int frame = 0; frame < 500; frame++) {
+            // heavy churn on some frames, barely anything on others
+            int changes = (frame % 10 == 0) ? 400 : random.nextInt(20);
+            for (int k = 0; k < changes; k++) {
+                int action = random.nextInt(4);
+                if (action == 0 || live.isEmpty()) {
+                    Component component = pool.isEmpty() ? new Component() {} : pool.remove(pool.size() - 1);
+                    component.depth = random.nextInt(8);
+                    list.insert(component);
+                    live.add(component);
+                    added.add(clock++);
+                } else if (action == 1) {
+                    int index = random.nextInt(live.size());
+                    Component component = live.remove(index);
+                    added.remove(index);
+                    list.remove(component);
+                    pool.add(component);
+                } else {
+                    live.get(random.nextInt(live.size())).depth = random.nextInt(8);
+                }
+            }
+
+            list.sort();
+
+            // the live components by depth, then by when they were added
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < live.size(); i++) expected.add(i);
+            expected.sort((a, b) -> {
+                Component ca = live.get(a);
+                Component cb = live.get(b);
+                if (ca.depth != cb.depth) return Integer.compare(ca.depth, cb.depth);
+                return Long.compare(added.get(a), added.get(b));
+            });
+
+            assertEquals(live.size(), list.size, "frame " + frame + " size");
+            for (int i = 0; i < list.size; i++) {
+                assertTrue(list.items[i] == live.get(expected.get(i)), "frame " + frame + " item " + i);
+            }
+        }
+    }
+
+}
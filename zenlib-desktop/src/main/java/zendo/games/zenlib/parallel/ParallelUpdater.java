@@ -0,0 +1,85 @@
+package zendo.games.zenlib.parallel;
+
+import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.ecs.ComponentStore;
+import zendo.games.zenlib.ecs.World;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the instances of {@link Component.ParallelSafe} component types on a fork-join pool.
+ *
+ * The store is split in half until a piece is no bigger than the grain size,
+ * and the pieces are updated concurrently. The call returns once every piece is done,
+ * which is the barrier before the World moves on to the next component type.
+ *
+ * Usage: world.setParallelUpdater(new ParallelUpdater());
+ */
+public class ParallelUpdater implements World.Updater {
+
+    public static final int default_grain = 512;
+
+    private final ForkJoinPool pool;
+    private final int grain;
+
+    public ParallelUpdater() {
+        this(ForkJoinPool.commonPool(), default_grain);
+    }
+
+    public ParallelUpdater(ForkJoinPool pool, int grain) {
+        assert(grain > 0) : "Grain size must be positive";
+        this.pool = pool;
+        this.grain = grain;
+    }
+
+    @Override
+    public void update(ComponentStore store, float dt) {
+        int size = store.size();
+        if (size <= grain) {
+            updateRange(store, dt, 0, size);
+        } else {
+            pool.invoke(new Chunk(store, dt, 0, size, grain));
+        }
+    }
+
+    private static void updateRange(ComponentStore store, float dt, int start, int end) {
+        for (int i = start; i < end; i++) {
+            Component component = store.get(i);
+            if (component.active && component.entity().active) {
+                component.update(dt);
+            }
+        }
+    }
+
+    private static class Chunk extends RecursiveAction {
+        // tasks are never serialized, but RecursiveAction is Serializable
+        private static final long serialVersionUID = 1L;
+
+        private final ComponentStore store;
+        private final float dt;
+        private final int start;
+        private final int end;
+        private final int grain;
+
+        Chunk(ComponentStore store, float dt, int start, int end, int grain) {
+            this.store = store;
+            this.dt = dt;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= grain) {
+                updateRange(store, dt, start, end);
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new Chunk(store, dt, start, mid, grain),
+                          new Chunk(store, dt, mid, end, grain));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package zendo.games.zenlib.streaming;
+
+import zendo.games.zenlib.components.StreamingTilemap;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads the chunks of a {@link StreamingTilemap} on a background thread,
+ * they're picked up by the tilemap's first update after they finish.
+ *
+ * Usage: tilemap.setLoader(new BackgroundLoader());
+ */
+public class BackgroundLoader implements StreamingTilemap.Loader {
+
+    private final ExecutorService executor;
+
+    public BackgroundLoader() {
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chunk-loader");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public BackgroundLoader(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void load(Runnable read) {
+        executor.execute(read);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
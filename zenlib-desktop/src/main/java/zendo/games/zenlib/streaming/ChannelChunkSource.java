@@ -0,0 +1,91 @@
+package zendo.games.zenlib.streaming;
+
+import zendo.games.zenlib.components.ChunkFile;
+import zendo.games.zenlib.components.StreamingTilemap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the chunks of a {@link ChunkFile} straight from disk with positional reads,
+ * so only the header and index are kept in memory. Positional reads don't move the
+ * channel's position, so this can be read from more than one thread at once.
+ */
+public class ChannelChunkSource implements StreamingTilemap.Source, AutoCloseable {
+
+    private final FileChannel channel;
+    private final ChunkFile index;
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    public ChannelChunkSource(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            byte[] header = new byte[ChunkFile.header_bytes];
+            readFully(ByteBuffer.wrap(header), 0);
+            byte[] bytes = new byte[ChunkFile.indexBytes(header)];
+            readFully(ByteBuffer.wrap(bytes), 0);
+            index = ChunkFile.index(bytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        int record = ChunkFile.recordBytes(index.chunkSize);
+        buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(record));
+    }
+
+    @Override
+    public int tileSize() {
+        return index.tileSize;
+    }
+
+    @Override
+    public int columns() {
+        return index.columns;
+    }
+
+    @Override
+    public int rows() {
+        return index.rows;
+    }
+
+    @Override
+    public int chunkSize() {
+        return index.chunkSize;
+    }
+
+    @Override
+    public boolean read(int chunkX, int chunkY, short[] tiles, int[] solid) {
+        int length = index.length(chunkX, chunkY);
+        if (length == 0) return false;
+
+        ByteBuffer buffer = buffers.get();
+        buffer.clear().limit(length);
+        try {
+            readFully(buffer, index.offset(chunkX, chunkY));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read chunk " + chunkX + ", " + chunkY, e);
+        }
+        ChunkFile.decode(buffer.array(), 0, index.chunkSize, tiles, solid);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of chunk file");
+            }
+            position += read;
+        }
+    }
+
+}